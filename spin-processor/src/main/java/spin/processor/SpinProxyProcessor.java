@@ -0,0 +1,447 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import spin.proxy.GeneratedProxyFactory;
+
+/**
+ * Annotation processor generating proxies for interfaces marked with
+ * {@link spin.SpinProxy}. <br>
+ * For each interface a subclass of {@link spin.proxy.GeneratedProxy} is
+ * generated, evaluating invocations with precomputed <code>Method</code>s, and
+ * a nested subclass of {@link spin.proxy.GeneratedProxyFactory} named
+ * <code>Factory</code>, which is picked up by
+ * {@link spin.ProxyFactory#getRegisteredProxyFactory(Class)}. <br>
+ * Proxies are generated for the erasure of the interface, thus generic
+ * interfaces are implemented as raw types.
+ */
+@SupportedAnnotationTypes("spin.SpinProxy")
+public class SpinProxyProcessor extends AbstractProcessor {
+
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	public boolean process(Set<? extends TypeElement> annotations,
+			RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv
+					.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() != ElementKind.INTERFACE) {
+					error(element, "@SpinProxy is applicable to interfaces only");
+				} else if (element.getModifiers().contains(Modifier.PRIVATE)) {
+					error(element, "@SpinProxy is not applicable to private interfaces");
+				} else {
+					generate((TypeElement) element);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Generate a proxy for the given interface.
+	 * 
+	 * @param type
+	 *            interface to generate proxy for
+	 */
+	private void generate(TypeElement type) {
+		Elements elements = processingEnv.getElementUtils();
+
+		PackageElement pkg = elements.getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName()
+				.toString();
+		String binaryName = elements.getBinaryName(type).toString();
+		String simpleName = binaryName.substring(packageName.length() == 0 ? 0
+				: packageName.length() + 1).replace('$', '_')
+				+ GeneratedProxyFactory.SUFFIX;
+		String qualifiedName = packageName.length() == 0 ? simpleName
+				: packageName + "." + simpleName;
+
+		List<ExecutableElement> methods = getMethods(type);
+
+		try {
+			PrintWriter writer = new PrintWriter(processingEnv.getFiler()
+					.createSourceFile(qualifiedName, type).openWriter());
+			try {
+				write(writer, type, packageName, simpleName, methods);
+			} finally {
+				writer.close();
+			}
+		} catch (IOException ex) {
+			error(type, "cannot generate proxy " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Get all methods to implement for the given interface, ignoring methods
+	 * declared by <code>Object</code> and methods overridden by others.
+	 * 
+	 * @param type
+	 *            interface to get methods for
+	 * @return methods
+	 */
+	private List<ExecutableElement> getMethods(TypeElement type) {
+		Elements elements = processingEnv.getElementUtils();
+		Types types = processingEnv.getTypeUtils();
+		DeclaredType raw = (DeclaredType) types.erasure(type.asType());
+
+		Map<String, ExecutableElement> methods = new LinkedHashMap<String, ExecutableElement>();
+		for (Element member : elements.getAllMembers(type)) {
+			if (member.getKind() != ElementKind.METHOD
+					|| member.getModifiers().contains(Modifier.STATIC)
+					|| member.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+				continue;
+			}
+			ExecutableElement method = (ExecutableElement) member;
+			String signature = getSignature(raw, method);
+			if (isObjectMethod(signature)) {
+				continue;
+			}
+			if (!methods.containsKey(signature)) {
+				methods.put(signature, method);
+			}
+		}
+		return new ArrayList<ExecutableElement>(methods.values());
+	}
+
+	/**
+	 * Get the erased signature of a method.
+	 * 
+	 * @param raw
+	 *            raw type of interface
+	 * @param method
+	 *            method to get signature for
+	 * @return signature
+	 */
+	private String getSignature(DeclaredType raw, ExecutableElement method) {
+		StringBuilder signature = new StringBuilder();
+		signature.append(method.getSimpleName());
+		signature.append('(');
+		List<? extends TypeMirror> parameters = asMemberOf(raw, method)
+				.getParameterTypes();
+		for (int p = 0; p < parameters.size(); p++) {
+			if (p > 0) {
+				signature.append(',');
+			}
+			signature.append(erasure(parameters.get(p)));
+		}
+		signature.append(')');
+		return signature.toString();
+	}
+
+	/**
+	 * Is the given signature one of the methods of <code>Object</code>
+	 * handled by {@link spin.proxy.GeneratedProxy} itself.
+	 * 
+	 * @param signature
+	 *            signature of method
+	 * @return <code>true</code> if method of object
+	 */
+	private boolean isObjectMethod(String signature) {
+		return "equals(java.lang.Object)".equals(signature)
+				|| "hashCode()".equals(signature)
+				|| "toString()".equals(signature);
+	}
+
+	/**
+	 * Write the source of a proxy.
+	 * 
+	 * @param writer
+	 *            writer to write to
+	 * @param type
+	 *            proxied interface
+	 * @param packageName
+	 *            name of package
+	 * @param simpleName
+	 *            simple name of proxy class
+	 * @param methods
+	 *            methods to implement
+	 */
+	private void write(PrintWriter writer, TypeElement type,
+			String packageName, String simpleName,
+			List<ExecutableElement> methods) {
+		Types types = processingEnv.getTypeUtils();
+		DeclaredType raw = (DeclaredType) types.erasure(type.asType());
+		String visibility = type.getModifiers().contains(Modifier.PUBLIC) ? "public "
+				: "";
+
+		if (packageName.length() > 0) {
+			writer.println("package " + packageName + ";");
+			writer.println();
+		}
+		writer.println("/**");
+		writer.println(" * Proxy generated for {@link " + erasure(raw) + "}.");
+		writer.println(" */");
+		writer.println("@java.lang.SuppressWarnings({ \"rawtypes\", \"unchecked\" })");
+		writer.println(visibility + "class " + simpleName
+				+ " extends spin.proxy.GeneratedProxy implements "
+				+ erasure(raw) + " {");
+
+		for (int m = 0; m < methods.size(); m++) {
+			ExecutableElement method = methods.get(m);
+			writer.println();
+			writer.println("\tprivate static final java.lang.reflect.Method m"
+					+ m + " = getMethod(" + erasure(method.getEnclosingElement().asType())
+					+ ".class, \"" + method.getSimpleName() + "\", new java.lang.Class[] {"
+					+ getParameterClasses(method) + " });");
+		}
+
+		writer.println();
+		writer.println("\t" + simpleName
+				+ "(spin.proxy.GeneratedProxyFactory factory, java.lang.Object object, spin.Evaluator evaluator) {");
+		writer.println("\t\tsuper(factory, object, evaluator);");
+		writer.println("\t}");
+
+		for (int m = 0; m < methods.size(); m++) {
+			writer.println();
+			writeMethod(writer, raw, methods.get(m), "m" + m);
+		}
+
+		writer.println();
+		writer.println("\t/**");
+		writer.println("\t * Factory of {@link " + simpleName + "}s.");
+		writer.println("\t */");
+		writer.println("\tpublic static class Factory extends spin.proxy.GeneratedProxyFactory {");
+		writer.println();
+		writer.println("\t\tpublic java.lang.Object createProxy(java.lang.Object object, spin.Evaluator evaluator) {");
+		writer.println("\t\t\treturn new " + simpleName + "(this, object, evaluator);");
+		writer.println("\t\t}");
+		writer.println("\t}");
+		writer.println("}");
+	}
+
+	/**
+	 * Write the implementation of a method.
+	 * 
+	 * @param writer
+	 *            writer to write to
+	 * @param raw
+	 *            raw type of interface
+	 * @param method
+	 *            method to implement
+	 * @param constant
+	 *            name of constant holding the method
+	 */
+	private void writeMethod(PrintWriter writer, DeclaredType raw,
+			ExecutableElement method, String constant) {
+		ExecutableType executable = asMemberOf(raw, method);
+		TypeMirror returnType = executable.getReturnType();
+		List<? extends TypeMirror> parameters = executable.getParameterTypes();
+		List<String> thrown = getThrownTypes(executable);
+
+		StringBuilder declaration = new StringBuilder();
+		declaration.append("\tpublic ");
+		declaration.append(erasure(returnType));
+		declaration.append(' ');
+		declaration.append(method.getSimpleName());
+		declaration.append('(');
+		StringBuilder args = new StringBuilder();
+		for (int p = 0; p < parameters.size(); p++) {
+			if (p > 0) {
+				declaration.append(", ");
+				args.append(", ");
+			}
+			String parameter = erasure(parameters.get(p));
+			if (method.isVarArgs() && p == parameters.size() - 1) {
+				parameter = parameter.substring(0, parameter.length() - 2)
+						+ "...";
+			}
+			declaration.append(parameter + " p" + p);
+			args.append("p" + p);
+		}
+		declaration.append(')');
+		if (!thrown.isEmpty()) {
+			declaration.append(" throws ");
+			for (int t = 0; t < thrown.size(); t++) {
+				if (t > 0) {
+					declaration.append(", ");
+				}
+				declaration.append(thrown.get(t));
+			}
+		}
+		declaration.append(" {");
+		writer.println(declaration);
+
+		String evaluate = "evaluate(" + constant + ", "
+				+ (parameters.isEmpty() ? "null" : "new java.lang.Object[] { " + args
+						+ " }") + ")";
+		String statement;
+		if (returnType.getKind() == TypeKind.VOID) {
+			statement = evaluate + ";";
+		} else if (returnType.getKind().isPrimitive()) {
+			String primitive = returnType.toString();
+			String box = processingEnv.getTypeUtils()
+					.boxedClass((PrimitiveType) returnType).getQualifiedName()
+					.toString();
+			statement = "return ((" + box + ") " + evaluate + ")." + primitive
+					+ "Value();";
+		} else {
+			statement = "return (" + erasure(returnType) + ") " + evaluate
+					+ ";";
+		}
+
+		if (thrown.contains("java.lang.Throwable")) {
+			writer.println("\t\t" + statement);
+		} else {
+			writer.println("\t\ttry {");
+			writer.println("\t\t\t" + statement);
+			writer.println("\t\t} catch (java.lang.RuntimeException ex) {");
+			writer.println("\t\t\tthrow ex;");
+			writer.println("\t\t} catch (java.lang.Error ex) {");
+			writer.println("\t\t\tthrow ex;");
+			for (String exception : thrown) {
+				writer.println("\t\t} catch (" + exception + " ex) {");
+				writer.println("\t\t\tthrow ex;");
+			}
+			writer.println("\t\t} catch (java.lang.Throwable ex) {");
+			writer.println("\t\t\tthrow new java.lang.reflect.UndeclaredThrowableException(ex);");
+			writer.println("\t\t}");
+		}
+		writer.println("\t}");
+	}
+
+	/**
+	 * Get the checked exceptions thrown by a method, ignoring unchecked
+	 * exceptions and exceptions that are subclasses of others.
+	 * 
+	 * @param executable
+	 *            method
+	 * @return names of erased exceptions
+	 */
+	private List<String> getThrownTypes(ExecutableType executable) {
+		Types types = processingEnv.getTypeUtils();
+		Elements elements = processingEnv.getElementUtils();
+		TypeMirror runtimeException = elements.getTypeElement(
+				"java.lang.RuntimeException").asType();
+		TypeMirror error = elements.getTypeElement("java.lang.Error")
+				.asType();
+
+		List<? extends TypeMirror> thrown = executable.getThrownTypes();
+		List<String> names = new ArrayList<String>();
+		for (int t = 0; t < thrown.size(); t++) {
+			TypeMirror exception = types.erasure(thrown.get(t));
+			if (types.isSubtype(exception, runtimeException)
+					|| types.isSubtype(exception, error)) {
+				continue;
+			}
+			boolean subtype = false;
+			for (int o = 0; o < thrown.size(); o++) {
+				TypeMirror other = types.erasure(thrown.get(o));
+				if (o != t && types.isSubtype(exception, other)
+						&& (!types.isSameType(exception, other) || o < t)) {
+					subtype = true;
+				}
+			}
+			if (!subtype) {
+				names.add(exception.toString());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Get the class literals of the erased parameters declared by the given
+	 * method.
+	 * 
+	 * @param method
+	 *            method
+	 * @return comma separated class literals
+	 */
+	private String getParameterClasses(ExecutableElement method) {
+		StringBuilder classes = new StringBuilder();
+		List<? extends VariableElement> parameters = method.getParameters();
+		for (int p = 0; p < parameters.size(); p++) {
+			if (p > 0) {
+				classes.append(',');
+			}
+			classes.append(' ');
+			classes.append(erasure(parameters.get(p).asType()));
+			classes.append(".class");
+		}
+		return classes.toString();
+	}
+
+	/**
+	 * Get the given method as a member of the given type.
+	 * 
+	 * @param type
+	 *            type
+	 * @param method
+	 *            method
+	 * @return executable type
+	 */
+	private ExecutableType asMemberOf(DeclaredType type,
+			ExecutableElement method) {
+		return (ExecutableType) processingEnv.getTypeUtils().asMemberOf(type,
+				method);
+	}
+
+	/**
+	 * Get the source representation of the erasure of the given type.
+	 * 
+	 * @param type
+	 *            type
+	 * @return erased type
+	 */
+	private String erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	/**
+	 * Report an error.
+	 * 
+	 * @param element
+	 *            element causing the error
+	 * @param message
+	 *            message
+	 */
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+				message, element);
+	}
+}
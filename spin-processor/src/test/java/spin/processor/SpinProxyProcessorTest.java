@@ -0,0 +1,256 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.processor;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+import spin.Evaluator;
+import spin.Invocation;
+import spin.ProxyFactory;
+import spin.proxy.GeneratedProxy;
+import spin.proxy.GeneratedProxyFactory;
+
+/**
+ * Test of {@link SpinProxyProcessor}.
+ */
+public class SpinProxyProcessorTest extends TestCase {
+
+	private File directory;
+
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("spin", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	protected void tearDown() throws Exception {
+		delete(directory);
+	}
+
+	/**
+	 * Test a generated proxy.
+	 * 
+	 * @throws Exception
+	 */
+	public void testGenerated() throws Exception {
+		ClassLoader loader = compile(new String[] {
+				"sample/Bean.java",
+				"package sample;\n"
+						+ "@spin.SpinProxy\n"
+						+ "public interface Bean extends spin.processor.SpinProxyProcessorTest.Calculator {\n"
+						+ "}",
+				"sample/BeanImpl.java",
+				"package sample;\n"
+						+ "public class BeanImpl extends spin.processor.SpinProxyProcessorTest.CalculatorBean implements Bean {\n"
+						+ "}" });
+
+		Class beanClass = loader.loadClass("sample.BeanImpl");
+
+		ProxyFactory factory = ProxyFactory
+				.getRegisteredProxyFactory(beanClass);
+		assertTrue(factory instanceof GeneratedProxyFactory);
+		assertEquals("sample.Bean_SpinProxy$Factory", factory.getClass()
+				.getName());
+		// processor and runtime agree on the name
+		assertEquals(GeneratedProxyFactory.getFactoryName(loader
+				.loadClass("sample.Bean")), factory.getClass().getName());
+
+		final List methods = new ArrayList();
+		Evaluator evaluator = new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				methods.add(invocation.getMethod().getName());
+				invocation.evaluate();
+			}
+		};
+
+		Object bean = beanClass.getDeclaredConstructor().newInstance();
+		Calculator proxy = (Calculator) factory.createProxy(bean, evaluator);
+		assertTrue(proxy instanceof GeneratedProxy);
+		assertFalse(Proxy.isProxyClass(proxy.getClass()));
+		assertTrue(factory.isProxy(proxy));
+
+		assertEquals(3, proxy.add(1, 2));
+		assertEquals("a-b", proxy.join(new String[] { "a", "b" }));
+		assertEquals("first", proxy.first(Arrays.asList(new String[] {
+				"first", "second" })));
+		proxy.check(true);
+		try {
+			proxy.check(false);
+			fail();
+		} catch (IOException expected) {
+		}
+		assertEquals(Arrays.asList(new String[] { "add", "join", "first",
+				"check", "check" }), methods);
+
+		assertEquals(proxy, factory.createProxy(bean, evaluator));
+		assertEquals(bean.hashCode(), proxy.hashCode());
+	}
+
+	/**
+	 * Test naming of proxies of nested interfaces.
+	 * 
+	 * @throws Exception
+	 */
+	public void testNested() throws Exception {
+		ClassLoader loader = compile(new String[] {
+				"sample/Outer.java",
+				"package sample;\n" + "public class Outer {\n"
+						+ "  @spin.SpinProxy\n"
+						+ "  interface Inner extends Runnable {\n" + "  }\n"
+						+ "  static class InnerBean implements Inner {\n"
+						+ "    public void run() {}\n" + "  }\n" + "}" });
+
+		Class beanClass = loader.loadClass("sample.Outer$InnerBean");
+
+		ProxyFactory factory = ProxyFactory
+				.getRegisteredProxyFactory(beanClass);
+		assertEquals("sample.Outer_Inner_SpinProxy$Factory", factory
+				.getClass().getName());
+	}
+
+	/**
+	 * Test rejection of classes.
+	 * 
+	 * @throws Exception
+	 */
+	public void testClass() throws Exception {
+		try {
+			compile(new String[] { "sample/Bean.java",
+					"package sample;\n" + "@spin.SpinProxy\n"
+							+ "public class Bean {\n" + "}" });
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	/**
+	 * Compile the given sources.
+	 * 
+	 * @param sources
+	 *            pairs of file names and contents
+	 * @return loader of compiled classes
+	 */
+	private ClassLoader compile(String[] sources) throws Exception {
+		List files = new ArrayList();
+		for (int s = 0; s < sources.length; s += 2) {
+			File file = new File(directory, sources[s]);
+			file.getParentFile().mkdirs();
+			Writer writer = new FileWriter(file);
+			writer.write(sources[s + 1]);
+			writer.close();
+			files.add(file);
+		}
+
+		String classpath = getLocation(ProxyFactory.class)
+				+ File.pathSeparator + getLocation(getClass())
+				+ File.pathSeparator + getLocation(TestCase.class);
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StandardJavaFileManager manager = compiler.getStandardFileManager(
+				null, null, null);
+		Iterable units = manager.getJavaFileObjectsFromFiles(files);
+		JavaCompiler.CompilationTask task = compiler.getTask(null, manager,
+				null, Arrays.asList(new String[] { "-d",
+						directory.getPath(), "-classpath", classpath }),
+				null, units);
+		task.setProcessors(Arrays
+				.asList(new Processor[] { new SpinProxyProcessor() }));
+		boolean success = task.call().booleanValue();
+		manager.close();
+		if (!success) {
+			throw new IllegalStateException("compilation failed");
+		}
+
+		return new URLClassLoader(new URL[] { directory.toURI().toURL() },
+				getClass().getClassLoader());
+	}
+
+	private String getLocation(Class clazz) throws Exception {
+		return new File(clazz.getProtectionDomain().getCodeSource()
+				.getLocation().toURI()).getPath();
+	}
+
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (int c = 0; c < children.length; c++) {
+				delete(children[c]);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Interface of sample beans.
+	 */
+	public static interface Calculator {
+		public int add(int a, int b);
+
+		public String join(String... parts);
+
+		public <T> T first(List<T> list);
+
+		public void check(boolean valid) throws IOException;
+	}
+
+	/**
+	 * Implementation of sample beans.
+	 */
+	public static class CalculatorBean {
+		public int add(int a, int b) {
+			return a + b;
+		}
+
+		public String join(String... parts) {
+			StringBuffer buffer = new StringBuffer();
+			for (int p = 0; p < parts.length; p++) {
+				if (p > 0) {
+					buffer.append('-');
+				}
+				buffer.append(parts[p]);
+			}
+			return buffer.toString();
+		}
+
+		public <T> T first(List<T> list) {
+			return list.get(0);
+		}
+
+		public void check(boolean valid) throws IOException {
+			if (!valid) {
+				throw new IOException();
+			}
+		}
+	}
+}
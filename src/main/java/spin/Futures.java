@@ -0,0 +1,130 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Support for methods returning a future, shared by the asynchronous
+ * evaluators for spin-off and spin-over. <br>
+ * A future is completed on the EDT with the result of an evaluated invocation
+ * - if the result is a <code>CompletionStage</code> itself, with the result of
+ * the latter as soon as it completes.
+ * 
+ * @see spin.off.AsyncSpinOffEvaluator
+ * @see spin.over.AsyncSpinOverEvaluator
+ */
+public final class Futures {
+
+	private Futures() {
+	}
+
+	/**
+	 * Does the given method return a future, i.e. a
+	 * {@link CompletableFuture}, {@link CompletionStage} or {@link Future}.
+	 * 
+	 * @param method
+	 *            method to test
+	 * @return <code>true</code> if a future is returned
+	 */
+	public static boolean isAsync(Method method) {
+		Class type = method.getReturnType();
+
+		return type == CompletableFuture.class
+				|| type == CompletionStage.class || type == Future.class;
+	}
+
+	/**
+	 * Complete a future with the outcome of an evaluated invocation.
+	 * 
+	 * @param future
+	 *            the future to complete
+	 * @param invocation
+	 *            the evaluated invocation
+	 */
+	public static void complete(final CompletableFuture future,
+			Invocation invocation) {
+		Object result = invocation.getResult();
+		if (result instanceof CompletionStage) {
+			((CompletionStage) result).whenComplete(new BiConsumer() {
+				public void accept(Object result, Object throwable) {
+					complete(future, result, (Throwable) throwable);
+				}
+			});
+		} else {
+			complete(future, result, invocation.getThrowable());
+		}
+	}
+
+	/**
+	 * Complete a future on the EDT.
+	 * 
+	 * @param future
+	 *            the future to complete
+	 * @param result
+	 *            the result
+	 * @param throwable
+	 *            the throwable, may be <code>null</code>
+	 */
+	private static void complete(final CompletableFuture future,
+			final Object result, Throwable throwable) {
+		// dependent stages wrap the throwable of their source
+		if (throwable instanceof CompletionException
+				&& throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+
+		if (SwingUtilities.isEventDispatchThread()) {
+			settle(future, result, throwable);
+		} else {
+			final Throwable cause = throwable;
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					settle(future, result, cause);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Complete a future on the current thread.
+	 * 
+	 * @param future
+	 *            the future to complete
+	 * @param result
+	 *            the result
+	 * @param throwable
+	 *            the throwable, may be <code>null</code>
+	 */
+	private static void settle(CompletableFuture future, Object result,
+			Throwable throwable) {
+		if (throwable == null) {
+			future.complete(result);
+		} else {
+			future.completeExceptionally(throwable);
+		}
+	}
+}
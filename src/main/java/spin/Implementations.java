@@ -0,0 +1,101 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolution of the methods implementing the methods of an interface, that
+ * the implementing class does not necessarily declare to implement. <br>
+ * A method is implemented by the public method with equal name and parameter
+ * types, regardless of the return type. This allows interfaces to declare
+ * variants of an object's methods, e.g. returning a future of the original
+ * result.
+ */
+public final class Implementations {
+
+	/**
+	 * The resolved implementations keyed by the implementing class.
+	 */
+	private static final ClassValue implementations = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new ConcurrentHashMap();
+		}
+	};
+
+	private Implementations() {
+	}
+
+	/**
+	 * Get the implementation of a method.
+	 * 
+	 * @param clazz
+	 *            the implementing class
+	 * @param method
+	 *            the method to get the implementation for
+	 * @return the method itself if declared by a superclass or an implemented
+	 *         interface, otherwise the public method of the given class with
+	 *         equal name and parameter types
+	 * @throws IllegalArgumentException
+	 *             if the class has no such method
+	 */
+	public static Method get(Class clazz, Method method) {
+		if (method.getDeclaringClass().isAssignableFrom(clazz)) {
+			return method;
+		}
+
+		ConcurrentMap methods = (ConcurrentMap) implementations.get(clazz);
+
+		Method implementation = (Method) methods.get(method);
+		if (implementation == null) {
+			implementation = resolve(clazz, method);
+
+			methods.putIfAbsent(method, implementation);
+		}
+		return implementation;
+	}
+
+	/**
+	 * Resolve the implementation of a method.
+	 * 
+	 * @param clazz
+	 *            the implementing class
+	 * @param method
+	 *            the method to resolve the implementation for
+	 * @return the implementation
+	 */
+	private static Method resolve(Class clazz, Method method) {
+		try {
+			Method implementation = clazz.getMethod(method.getName(), method
+					.getParameterTypes());
+			if (Modifier.isStatic(implementation.getModifiers())) {
+				throw new NoSuchMethodException();
+			}
+			return implementation;
+		} catch (NoSuchMethodException ex) {
+			throw new IllegalArgumentException(clazz.getName()
+					+ " does not implement " + method.getName()
+					+ Arrays.asList(method.getParameterTypes()));
+		}
+	}
+}
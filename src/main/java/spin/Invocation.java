@@ -18,13 +18,12 @@
  */
 package spin;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 /**
  * A single invocation on a <em>Spin</em> proxy handled by {@link Evaluator}s.
  */
-public class Invocation {
+public class Invocation implements Cloneable {
 
 	/**
 	 * The object this invocation is evaluated on.
@@ -36,6 +35,16 @@ public class Invocation {
 	 */
 	private Method method;
 
+	/**
+	 * The metadata of the method, resolved lazily.
+	 */
+	private MethodMetadata metadata;
+
+	/**
+	 * Optional table to resolve the metadata from.
+	 */
+	private MethodMetadata.Table table;
+
 	/**
 	 * The arguments of the method to invoce.
 	 */
@@ -73,6 +82,46 @@ public class Invocation {
 		this.args = args;
 	}
 
+	/**
+	 * Create an invocation of the given method on the given object with the
+	 * given arguments, resolving the metadata of the method from the given
+	 * table if needed.
+	 * 
+	 * @param object
+	 *            object to invoke method on
+	 * @param method
+	 *            method to invoke
+	 * @param args
+	 *            arguments for the method invocation
+	 * @param table
+	 *            table of metadata
+	 */
+	public Invocation(Object object, Method method, Object[] args,
+			MethodMetadata.Table table) {
+		this.object = object;
+		this.method = method;
+		this.args = args;
+		this.table = table;
+	}
+
+	/**
+	 * Create an invocation of the method of the given metadata on the given
+	 * object with the given arguments.
+	 * 
+	 * @param object
+	 *            object to invoke method on
+	 * @param metadata
+	 *            metadata of the method to invoke
+	 * @param args
+	 *            arguments for the method invocation
+	 */
+	public Invocation(Object object, MethodMetadata metadata, Object[] args) {
+		this.object = object;
+		this.method = metadata.getMethod();
+		this.metadata = metadata;
+		this.args = args;
+	}
+
 	/**
 	 * Set the object this invocation is evaluated on.
 	 * 
@@ -100,6 +149,8 @@ public class Invocation {
 	 */
 	public void setMethod(Method method) {
 		this.method = method;
+		this.metadata = null;
+		this.table = null;
 	}
 
 	/**
@@ -111,6 +162,23 @@ public class Invocation {
 		return method;
 	}
 
+	/**
+	 * Get the metadata of the invoked method.
+	 * 
+	 * @return metadata
+	 * @see MethodMetadata#get(Method)
+	 */
+	public MethodMetadata getMetadata() {
+		if (metadata == null) {
+			if (table == null) {
+				metadata = MethodMetadata.get(method);
+			} else {
+				metadata = table.get(method);
+			}
+		}
+		return metadata;
+	}
+
 	/**
 	 * Set the arguments for the invoked method.
 	 * 
@@ -171,6 +239,8 @@ public class Invocation {
 	/**
 	 * Evaluate the return value (or a possibly thrown <code>Throwable</code>)
 	 * by invoking to method with the arguments on the wrapped object.
+	 * 
+	 * @see #invoke()
 	 */
 	public void evaluate() {
 		if (evaluated) {
@@ -178,9 +248,7 @@ public class Invocation {
 		}
 
 		try {
-			result = method.invoke(object, args);
-		} catch (InvocationTargetException ex) {
-			this.throwable = ex.getTargetException();
+			result = invoke();
 		} catch (Throwable throwable) {
 			this.throwable = throwable;
 		}
@@ -188,6 +256,42 @@ public class Invocation {
 		evaluated = true;
 	}
 
+	/**
+	 * Invoke the method with the arguments on the wrapped object. <br>
+	 * This default implementation uses an {@link Invoker}, subclasses may
+	 * override to dispatch the invocation differently.
+	 * 
+	 * @return result of the invocation
+	 * @throws Throwable
+	 *             the throwable thrown by the method
+	 * @see Invoker#get(Method)
+	 */
+	protected Object invoke() throws Throwable {
+		return Invoker.get(method).invoke(object, args);
+	}
+
+	/**
+	 * Create a copy of this invocation, which can be evaluated independently,
+	 * e.g. when the caller does not wait for the evaluation. The arguments
+	 * are copied too, since the caller might reuse them.
+	 * 
+	 * @return copy of this invocation, not yet evaluated
+	 */
+	public Invocation copy() {
+		try {
+			Invocation copy = (Invocation) clone();
+			copy.evaluated = false;
+			copy.result = null;
+			copy.throwable = null;
+			if (args != null) {
+				copy.args = (Object[]) args.clone();
+			}
+			return copy;
+		} catch (CloneNotSupportedException ex) {
+			throw new Error(ex);
+		}
+	}
+
 	/**
 	 * Test if this invocation is already evaluated.
 	 * 
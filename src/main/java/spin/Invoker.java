@@ -0,0 +1,336 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An invoker of a single method - used by {@link Invocation}s to invoke their
+ * method on an object. <br>
+ * Invokers either use reflection or call a <code>MethodHandle</code> adapted
+ * to a generic type, both are created once for each method and cached. <br>
+ * Note that reflection is used as default: A method handle which isn't a
+ * constant to the JIT is not faster than the inflated accessors of reflection
+ * on older JREs, while since Java 18 reflection on a constant
+ * <code>Method</code> (as passed by JDK proxies) is folded by the JIT.
+ * 
+ * @see #get(Method)
+ * @see #setDefaultHandles(boolean)
+ */
+public abstract class Invoker {
+
+	/**
+	 * Invokers of methods keyed by their declaring class, so this cache does
+	 * not prevent class loaders from being garbage collected.
+	 */
+	private static final ClassValue invokers = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new ConcurrentHashMap();
+		}
+	};
+
+	/**
+	 * Reflective invokers of methods keyed by their declaring class.
+	 */
+	private static final ClassValue reflectiveInvokers = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new ConcurrentHashMap();
+		}
+	};
+
+	private static boolean defaultHandles = false;
+
+	/**
+	 * Invoke the method on the given object with the given arguments.
+	 * 
+	 * @param object
+	 *            object to invoke method on
+	 * @param args
+	 *            arguments for the method invocation, may be <code>null</code>
+	 *            for methods without parameters
+	 * @return result of the invocation
+	 * @throws Throwable
+	 *             the throwable thrown by the method itself
+	 */
+	public abstract Object invoke(Object object, Object[] args)
+			throws Throwable;
+
+	/**
+	 * Get a cached invoker for the given method, using a handle if handles
+	 * are used as default.
+	 * 
+	 * @param method
+	 *            method to get invoker for
+	 * @return invoker
+	 * @see #setDefaultHandles(boolean)
+	 */
+	public static Invoker get(Method method) {
+		if (!defaultHandles) {
+			return getReflective(method);
+		}
+
+		Map methods = (Map) invokers.get(method.getDeclaringClass());
+
+		Invoker invoker = (Invoker) methods.get(method);
+		if (invoker == null) {
+			invoker = createHandle(method);
+
+			methods.put(method, invoker);
+		}
+		return invoker;
+	}
+
+	/**
+	 * Get a cached reflective invoker for the given method. <br>
+	 * Invokers are cached for the first copy of each method only, since the
+	 * accessibility of copies may differ.
+	 * 
+	 * @param method
+	 *            method to get invoker for
+	 * @return invoker
+	 */
+	private static Invoker getReflective(Method method) {
+		Map methods = (Map) reflectiveInvokers.get(method
+				.getDeclaringClass());
+
+		ReflectiveInvoker invoker = (ReflectiveInvoker) methods.get(method);
+		if (invoker == null) {
+			invoker = new ReflectiveInvoker(method);
+
+			methods.put(method, invoker);
+		} else if (invoker.method != method) {
+			invoker = new ReflectiveInvoker(method);
+		}
+		return invoker;
+	}
+
+	/**
+	 * Create an invoker for the given method utilizing a
+	 * <code>MethodHandle</code>, falling back to reflection if the method
+	 * is not accessible to a handle.
+	 * 
+	 * @param method
+	 *            method to create invoker for
+	 * @return invoker
+	 */
+	public static Invoker createHandle(Method method) {
+		MethodHandle handle;
+		try {
+			handle = unreflect(method).asFixedArity();
+		} catch (Exception ex) {
+			return createReflective(method);
+		}
+
+		if (Modifier.isStatic(method.getModifiers())) {
+			handle = MethodHandles.dropArguments(handle, 0,
+					new Class[] { Object.class });
+		}
+		handle = handle.asType(handle.type().generic());
+
+		switch (method.getParameterTypes().length) {
+		case 0:
+			return new HandleInvoker0(handle);
+		case 1:
+			return new HandleInvoker1(handle);
+		case 2:
+			return new HandleInvoker2(handle);
+		case 3:
+			return new HandleInvoker3(handle);
+		default:
+			return new SpreadHandleInvoker(handle);
+		}
+	}
+
+	/**
+	 * Create an invoker for the given method utilizing reflection.
+	 * 
+	 * @param method
+	 *            method to create invoker for
+	 * @return invoker
+	 */
+	public static Invoker createReflective(Method method) {
+		return new ReflectiveInvoker(method);
+	}
+
+	/**
+	 * Should cached invokers use method handles.
+	 * 
+	 * @return <code>true</code> if handles are used
+	 */
+	public static boolean getDefaultHandles() {
+		return defaultHandles;
+	}
+
+	/**
+	 * Should cached invokers use method handles. <br>
+	 * Affects only invokers which are not yet cached.
+	 * 
+	 * @param handles
+	 *            <code>true</code> if handles should be used
+	 */
+	public static void setDefaultHandles(boolean handles) {
+		defaultHandles = handles;
+	}
+
+	/**
+	 * Unreflect the given method, granting access to public methods of
+	 * non-public classes if necessary.
+	 * 
+	 * @param method
+	 *            method to unreflect
+	 * @return handle for the method
+	 * @throws IllegalAccessException
+	 *             if the method is not accessible
+	 */
+	private static MethodHandle unreflect(Method method)
+			throws IllegalAccessException {
+		try {
+			return MethodHandles.publicLookup().unreflect(method);
+		} catch (IllegalAccessException ex) {
+			if (!Modifier.isPublic(method.getModifiers())) {
+				throw ex;
+			}
+
+			// don't change accessibility of the given method
+			Method copy;
+			try {
+				copy = method.getDeclaringClass().getDeclaredMethod(
+						method.getName(), method.getParameterTypes());
+			} catch (NoSuchMethodException notFound) {
+				throw ex;
+			}
+			copy.setAccessible(true);
+
+			return MethodHandles.publicLookup().unreflect(copy);
+		}
+	}
+
+	/**
+	 * Invoker with a <code>MethodHandle</code> of a method without
+	 * parameters.
+	 */
+	private static class HandleInvoker0 extends Invoker {
+
+		private final MethodHandle handle;
+
+		public HandleInvoker0(MethodHandle handle) {
+			this.handle = handle;
+		}
+
+		public Object invoke(Object object, Object[] args) throws Throwable {
+			return (Object) handle.invokeExact(object);
+		}
+	}
+
+	/**
+	 * Invoker with a <code>MethodHandle</code> of a method with one
+	 * parameter.
+	 */
+	private static class HandleInvoker1 extends Invoker {
+
+		private final MethodHandle handle;
+
+		public HandleInvoker1(MethodHandle handle) {
+			this.handle = handle;
+		}
+
+		public Object invoke(Object object, Object[] args) throws Throwable {
+			return (Object) handle.invokeExact(object, args[0]);
+		}
+	}
+
+	/**
+	 * Invoker with a <code>MethodHandle</code> of a method with two
+	 * parameters.
+	 */
+	private static class HandleInvoker2 extends Invoker {
+
+		private final MethodHandle handle;
+
+		public HandleInvoker2(MethodHandle handle) {
+			this.handle = handle;
+		}
+
+		public Object invoke(Object object, Object[] args) throws Throwable {
+			return (Object) handle.invokeExact(object, args[0], args[1]);
+		}
+	}
+
+	/**
+	 * Invoker with a <code>MethodHandle</code> of a method with three
+	 * parameters.
+	 */
+	private static class HandleInvoker3 extends Invoker {
+
+		private final MethodHandle handle;
+
+		public HandleInvoker3(MethodHandle handle) {
+			this.handle = handle;
+		}
+
+		public Object invoke(Object object, Object[] args) throws Throwable {
+			return (Object) handle.invokeExact(object, args[0], args[1],
+					args[2]);
+		}
+	}
+
+	/**
+	 * Invoker with a <code>MethodHandle</code> of a method with an arbitrary
+	 * number of parameters.
+	 */
+	private static class SpreadHandleInvoker extends Invoker {
+
+		private final MethodHandle handle;
+
+		public SpreadHandleInvoker(MethodHandle handle) {
+			this.handle = handle.asSpreader(Object[].class, handle.type()
+					.parameterCount() - 1);
+		}
+
+		public Object invoke(Object object, Object[] args) throws Throwable {
+			return (Object) handle.invokeExact(object, args);
+		}
+	}
+
+	/**
+	 * Invoker with reflection.
+	 */
+	private static class ReflectiveInvoker extends Invoker {
+
+		private final Method method;
+
+		public ReflectiveInvoker(Method method) {
+			this.method = method;
+		}
+
+		public Object invoke(Object object, Object[] args) throws Throwable {
+			try {
+				return method.invoke(object, args);
+			} catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+	}
+}
@@ -0,0 +1,428 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metadata of a method invoked on <em>Spin</em> proxies, classifying the
+ * method once instead of on each invocation. <br>
+ * The methods <code>equals()</code>, <code>hashCode()</code> and
+ * <code>toString()</code> of <code>Object</code> are local, i.e. they are
+ * answered on the calling thread without an evaluator - the latter two only
+ * if not overridden by the class of the proxied object, since only the identity
+ * based implementations of <code>Object</code> are known to be thread-safe.
+ * 
+ * @see #get(Method)
+ * @see Invocation#getMetadata()
+ */
+public final class MethodMetadata {
+
+	private static final int EQUALS = 0;
+
+	private static final int HASH_CODE = 1;
+
+	private static final int TO_STRING = 2;
+
+	private static final int VOID = 3;
+
+	private static final int NON_VOID = 4;
+
+	/**
+	 * Maximum number of copies of an equal method to keep in a table.
+	 */
+	private static final int MAX_COPIES = 4;
+
+	/**
+	 * Tables of metadata keyed by the declaring class of methods, so this
+	 * cache does not prevent class loaders from being garbage collected.
+	 */
+	private static final ClassValue tables = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new Table(true);
+		}
+	};
+
+	/**
+	 * Flags whether <code>hashCode()</code> respectively
+	 * <code>toString()</code> are identity based, keyed by class.
+	 */
+	private static final ClassValue identities = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new boolean[] { isDeclaredByObject(clazz, "hashCode"),
+					isDeclaredByObject(clazz, "toString") };
+		}
+	};
+
+	private Method method;
+
+	private int kind;
+
+	private int copies;
+
+	private volatile Annotation[] annotations;
+
+	/**
+	 * Classify the given method.
+	 * 
+	 * @param method
+	 *            method
+	 */
+	private MethodMetadata(Method method) {
+		this.method = method;
+
+		String name = method.getName();
+		Class[] parameters = method.getParameterTypes();
+		if ("equals".equals(name) && parameters.length == 1
+				&& parameters[0] == Object.class) {
+			kind = EQUALS;
+		} else if ("hashCode".equals(name) && parameters.length == 0) {
+			kind = HASH_CODE;
+		} else if ("toString".equals(name) && parameters.length == 0) {
+			kind = TO_STRING;
+		} else if (method.getReturnType() == Void.TYPE) {
+			kind = VOID;
+		} else {
+			kind = NON_VOID;
+		}
+	}
+
+	/**
+	 * Get the method.
+	 * 
+	 * @return method
+	 */
+	public Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * Is the method <code>equals(Object)</code>.
+	 * 
+	 * @return <code>true</code> if equals
+	 */
+	public boolean isEquals() {
+		return kind == EQUALS;
+	}
+
+	/**
+	 * Is the method <code>hashCode()</code>.
+	 * 
+	 * @return <code>true</code> if hashCode
+	 */
+	public boolean isHashCode() {
+		return kind == HASH_CODE;
+	}
+
+	/**
+	 * Is the method <code>toString()</code>.
+	 * 
+	 * @return <code>true</code> if toString
+	 */
+	public boolean isToString() {
+		return kind == TO_STRING;
+	}
+
+	/**
+	 * Has the method a <code>void</code> return type.
+	 * 
+	 * @return <code>true</code> if void
+	 */
+	public boolean isVoid() {
+		return kind == VOID;
+	}
+
+	/**
+	 * Is an invocation of the method on the given object to be answered
+	 * locally, i.e. without any thread hopping.
+	 * 
+	 * @param object
+	 *            the object the method is invoked on
+	 * @return <code>true</code> if local
+	 */
+	public boolean isLocal(Object object) {
+		if (kind > TO_STRING) {
+			return false;
+		} else if (kind == EQUALS) {
+			return true;
+		} else {
+			return ((boolean[]) identities.get(object.getClass()))[kind
+					- HASH_CODE];
+		}
+	}
+
+	/**
+	 * Get an annotation of the method. <br>
+	 * Annotations are resolved once, searching the method itself and all
+	 * methods with the same signature in the interfaces of its declaring
+	 * class, so an annotation on an interface method is found even if a
+	 * proxy passes the implementing method.
+	 * 
+	 * @param type
+	 *            type of annotation
+	 * @return annotation or <code>null</code>
+	 */
+	public Annotation getAnnotation(Class type) {
+		Annotation[] annotations = this.annotations;
+		if (annotations == null) {
+			annotations = resolveAnnotations();
+			this.annotations = annotations;
+		}
+
+		for (int a = 0; a < annotations.length; a++) {
+			if (annotations[a].annotationType() == type) {
+				return annotations[a];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Resolve the annotations of the method.
+	 * 
+	 * @return annotations
+	 */
+	private Annotation[] resolveAnnotations() {
+		List annotations = new ArrayList();
+		Set types = new HashSet();
+
+		addAnnotations(method, annotations, types);
+
+		Set interfaces = new HashSet();
+		for (Class clazz = method.getDeclaringClass(); clazz != null; clazz = clazz
+				.getSuperclass()) {
+			addInterfaces(clazz, interfaces);
+		}
+		for (Iterator iterator = interfaces.iterator(); iterator
+				.hasNext();) {
+			Class type = (Class) iterator.next();
+			try {
+				addAnnotations(type.getDeclaredMethod(method.getName(), method
+						.getParameterTypes()), annotations, types);
+			} catch (NoSuchMethodException notDeclared) {
+			}
+		}
+
+		return (Annotation[]) annotations.toArray(new Annotation[annotations
+				.size()]);
+	}
+
+	/**
+	 * Add the annotations of the given method, unless one of the same type was
+	 * already added.
+	 */
+	private static void addAnnotations(Method method, List annotations,
+			Set types) {
+		Annotation[] candidates = method.getAnnotations();
+		for (int c = 0; c < candidates.length; c++) {
+			if (types.add(candidates[c].annotationType())) {
+				annotations.add(candidates[c]);
+			}
+		}
+	}
+
+	/**
+	 * Add all interfaces implemented respectively extended by the given class.
+	 */
+	private static void addInterfaces(Class clazz, Set interfaces) {
+		Class[] candidates = clazz.getInterfaces();
+		for (int c = 0; c < candidates.length; c++) {
+			if (interfaces.add(candidates[c])) {
+				addInterfaces(candidates[c], interfaces);
+			}
+		}
+	}
+
+	/**
+	 * Get the metadata for the given method.
+	 * 
+	 * @param method
+	 *            method to get metadata for
+	 * @return metadata
+	 */
+	public static MethodMetadata get(Method method) {
+		return ((Table) tables.get(method.getDeclaringClass())).get(method);
+	}
+
+	/**
+	 * Is the public method with the given name and without parameters declared
+	 * by <code>Object</code>.
+	 * 
+	 * @param clazz
+	 *            class to test
+	 * @param name
+	 *            name of method
+	 * @return <code>true</code> if declared by <code>Object</code>
+	 */
+	private static boolean isDeclaredByObject(Class clazz, String name) {
+		try {
+			return clazz.getMethod(name, new Class[0]).getDeclaringClass() == Object.class;
+		} catch (NoSuchMethodException ex) {
+			throw new Error(ex);
+		}
+	}
+
+	/**
+	 * A table of metadata keyed by the identity of methods. <br>
+	 * Proxies passing a fixed set of constant methods may keep their own
+	 * table, saving the lookup of the table for the declaring class in
+	 * {@link MethodMetadata#get(Method)}.
+	 * 
+	 * @see Invocation#Invocation(Object, Method, Object[], Table)
+	 */
+	public static class Table {
+
+		private boolean global;
+
+		private volatile Object[] entries = new Object[8];
+
+		/**
+		 * Metadata of methods keyed by equality, for copies exceeding the
+		 * maximum of a global table, <code>null</code> otherwise.
+		 */
+		private final ConcurrentHashMap overflow;
+
+		private int size;
+
+		/**
+		 * Create a table.
+		 */
+		public Table() {
+			this(false);
+		}
+
+		/**
+		 * Create a table. <br>
+		 * Since reflection returns a new copy of a method on each lookup, a
+		 * global table keeps only a few copies for each method, e.g. the
+		 * constants of different proxy classes, while any other copy is
+		 * resolved by equality without locking.
+		 * 
+		 * @param global
+		 *            is this the global table of a declaring class
+		 */
+		private Table(boolean global) {
+			this.global = global;
+
+			overflow = global ? new ConcurrentHashMap() : null;
+		}
+
+		/**
+		 * Get the metadata for the given method.
+		 * 
+		 * @param method
+		 *            method
+		 * @return metadata
+		 */
+		public MethodMetadata get(Method method) {
+			Object[] entries = this.entries;
+			int mask = entries.length - 2;
+			int index = (System.identityHashCode(method) << 1) & mask;
+			while (true) {
+				Object key = entries[index];
+				if (key == method) {
+					return (MethodMetadata) entries[index + 1];
+				} else if (key == null) {
+					if (overflow != null) {
+						MethodMetadata metadata = (MethodMetadata) overflow
+								.get(method);
+						if (metadata != null) {
+							return metadata;
+						}
+					}
+					return add(method);
+				}
+				index = (index + 2) & mask;
+			}
+		}
+
+		/**
+		 * Add the given method.
+		 * 
+		 * @param method
+		 *            method to add
+		 * @return metadata
+		 */
+		private synchronized MethodMetadata add(Method method) {
+			Object[] entries = this.entries;
+
+			MethodMetadata metadata = null;
+			if (global) {
+				for (int e = 0; e < entries.length; e += 2) {
+					if (entries[e] == method) {
+						return (MethodMetadata) entries[e + 1];
+					} else if (entries[e] != null && entries[e].equals(method)) {
+						metadata = (MethodMetadata) entries[e + 1];
+					}
+				}
+
+				if (metadata == null) {
+					metadata = new MethodMetadata(method);
+				} else if (metadata.copies == MAX_COPIES) {
+					// resolve further copies by equality
+					overflow.putIfAbsent(method, metadata);
+					return metadata;
+				}
+				metadata.copies++;
+			} else {
+				metadata = MethodMetadata.get(method);
+			}
+
+			if ((size + 1) * 4 > entries.length) {
+				entries = new Object[entries.length * 2];
+				Object[] old = this.entries;
+				for (int e = 0; e < old.length; e += 2) {
+					if (old[e] != null) {
+						put(entries, old[e], old[e + 1]);
+					}
+				}
+			} else {
+				entries = (Object[]) entries.clone();
+			}
+			if (put(entries, method, metadata)) {
+				size++;
+			}
+
+			this.entries = entries;
+
+			return metadata;
+		}
+
+		private static boolean put(Object[] entries, Object key, Object value) {
+			int mask = entries.length - 2;
+			int index = (System.identityHashCode(key) << 1) & mask;
+			while (entries[index] != null) {
+				if (entries[index] == key) {
+					return false;
+				}
+				index = (index + 2) & mask;
+			}
+			entries[index] = key;
+			entries[index + 1] = value;
+			return true;
+		}
+	}
+}
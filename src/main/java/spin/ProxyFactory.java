@@ -18,7 +18,10 @@
  */
 package spin;
 
-import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+import spin.proxy.GeneratedProxyFactory;
 
 /**
  * A factory of proxies which intercept invocations, using Evaluators to
@@ -29,17 +32,22 @@ import java.lang.reflect.Method;
 public abstract class ProxyFactory {
 
 	/**
-	 * The equals method of class <code>object</code>.
+	 * Marker of classes without a registered factory.
 	 */
-	private static final Method equalsMethod;
-	static {
-		try {
-			equalsMethod = Object.class.getMethod("equals",
-					new Class[] { Object.class });
-		} catch (Exception ex) {
-			throw new Error(ex);
+	private static final Object UNREGISTERED = new Object();
+
+	/**
+	 * Registered factories keyed by the class of proxied objects.
+	 */
+	private static final ClassValue registeredFactories = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			ProxyFactory factory = lookupGeneratedProxyFactory(clazz);
+			if (factory == null) {
+				return UNREGISTERED;
+			}
+			return factory;
 		}
-	}
+	};
 
 	/**
 	 * Create a proxy for the given object that evaluates invocations with the
@@ -63,6 +71,16 @@ public abstract class ProxyFactory {
 	 */
 	public abstract boolean isProxy(Object object);
 
+	/**
+	 * Get the object intercepted by the given proxy of this factory.
+	 * 
+	 * @param proxy
+	 *            proxy created by this factory
+	 * @return the intercepted object
+	 * @see #isProxy(Object)
+	 */
+	public abstract Object getObject(Object proxy);
+
 	/**
 	 * Test if the given proxies of this factory are intercepting the same
 	 * object.
@@ -89,13 +107,95 @@ public abstract class ProxyFactory {
 	 */
 	protected Object evaluteInvocation(Evaluator evaluator, Object proxy,
 			Invocation invocation) throws Throwable {
-		if (equalsMethod.equals(invocation.getMethod())) {
-			return new Boolean(isProxy(invocation.getArguments()[0])
+		// only methods declared by Object can be local, so the metadata
+		// is not needed for any other method
+		if (invocation.getMethod().getDeclaringClass() == Object.class) {
+			MethodMetadata metadata = invocation.getMetadata();
+			if (metadata.isLocal(invocation.getObject())) {
+				return evaluateLocal(proxy, invocation, metadata);
+			}
+		}
+
+		evaluator.evaluate(invocation);
+
+		return invocation.resultOrThrow();
+	}
+
+	/**
+	 * Evaluate the given invocation locally.
+	 * 
+	 * @param proxy
+	 *            proxy that intercepted the invocation
+	 * @param invocation
+	 *            the invocation to evaluate
+	 * @param metadata
+	 *            metadata of the invoked method
+	 * @return result of evaluation
+	 * @see MethodMetadata#isLocal(Object)
+	 */
+	private Object evaluateLocal(Object proxy, Invocation invocation,
+			MethodMetadata metadata) {
+		Object object = invocation.getObject();
+		if (metadata.isEquals()) {
+			return Boolean.valueOf(isProxy(invocation.getArguments()[0])
 					&& areProxyEqual(proxy, invocation.getArguments()[0]));
+		} else if (metadata.isHashCode()) {
+			return Integer.valueOf(object.hashCode());
 		} else {
-			evaluator.evaluate(invocation);
+			return object.toString();
+		}
+	}
+
+	/**
+	 * Get the factory registered for proxies of objects of the given class. <br>
+	 * A factory is registered if the class implements a single interface only,
+	 * for which a proxy was generated at compile time.
+	 * 
+	 * @param clazz
+	 *            class of proxied objects
+	 * @return registered factory or <code>null</code>
+	 * @see SpinProxy
+	 */
+	public static ProxyFactory getRegisteredProxyFactory(Class clazz) {
+		Object factory = registeredFactories.get(clazz);
+		if (factory == UNREGISTERED) {
+			return null;
+		}
+		return (ProxyFactory) factory;
+	}
 
-			return invocation.resultOrThrow();
+	/**
+	 * Lookup the factory of proxies generated for the single interface
+	 * implemented by the given class.
+	 * 
+	 * @param clazz
+	 *            class of proxied objects
+	 * @return generated factory or <code>null</code>
+	 */
+	private static ProxyFactory lookupGeneratedProxyFactory(Class clazz) {
+		Set interfaces = new HashSet();
+		while (clazz != null) {
+			Class[] candidates = clazz.getInterfaces();
+			for (int c = 0; c < candidates.length; c++) {
+				interfaces.add(candidates[c]);
+			}
+			clazz = clazz.getSuperclass();
+		}
+		if (interfaces.size() != 1) {
+			return null;
+		}
+		Class type = (Class) interfaces.iterator().next();
+
+		try {
+			Class factoryClass = Class.forName(GeneratedProxyFactory
+					.getFactoryName(type), true, type.getClassLoader());
+
+			return (ProxyFactory) factoryClass.getDeclaredConstructor()
+					.newInstance();
+		} catch (ClassNotFoundException ex) {
+			return null;
+		} catch (Exception ex) {
+			throw new Error(ex);
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of canonical proxies.
+ * <p>
+ * For each combination of target object, {@link ProxyFactory} and
+ * {@link Evaluator} at most one proxy is kept alive - as long as a proxy is
+ * referenced elsewhere, the registry returns it instead of creating a new one.
+ * All three are compared by identity. Proxies are referenced weakly and their
+ * entries are expunged once they are garbage collected.
+ * </p>
+ * <p>
+ * Lookups of existing proxies do not lock, registration of a new proxy is
+ * lock-free too: if two threads race for the same key, both receive the proxy
+ * registered first.
+ * </p>
+ * 
+ * @see Spin#off(Object)
+ * @see Spin#over(Object)
+ */
+public class ProxyRegistry {
+
+	private final ConcurrentMap proxies = new ConcurrentHashMap();
+
+	private final ReferenceQueue queue = new ReferenceQueue();
+
+	/**
+	 * Get a proxy for the given object, reusing an existing one if still
+	 * alive.
+	 * 
+	 * @param object
+	 *            object to get proxy for
+	 * @param factory
+	 *            factory for a new proxy
+	 * @param evaluator
+	 *            evaluator of invocations on the given object
+	 * @return proxy for the given object
+	 */
+	public Object getProxy(Object object, ProxyFactory factory,
+			Evaluator evaluator) {
+		if (object == null) {
+			throw new IllegalArgumentException("object must not be null");
+		}
+		if (factory == null) {
+			throw new IllegalArgumentException("factory must not be null");
+		}
+		if (evaluator == null) {
+			throw new IllegalArgumentException("evaluator must not be null");
+		}
+
+		expunge();
+
+		ProxyReference reference = (ProxyReference) proxies
+				.get(new StrongKey(object, factory, evaluator));
+		if (reference != null) {
+			Object proxy = reference.get();
+			if (proxy != null) {
+				return proxy;
+			}
+		}
+
+		Object proxy = factory.createProxy(object, evaluator);
+
+		WeakKey key = new WeakKey(object, factory, evaluator);
+		ProxyReference created = new ProxyReference(proxy, key, queue);
+		while (true) {
+			reference = (ProxyReference) proxies.putIfAbsent(key, created);
+			if (reference == null) {
+				return proxy;
+			}
+
+			Object existing = reference.get();
+			if (existing != null) {
+				return existing;
+			}
+
+			if (proxies.replace(key, reference, created)) {
+				return proxy;
+			}
+		}
+	}
+
+	/**
+	 * Get the count of registered proxies, including those already collected
+	 * but not yet expunged.
+	 * 
+	 * @return count of proxies
+	 */
+	int size() {
+		expunge();
+
+		return proxies.size();
+	}
+
+	/**
+	 * Remove the entries of all collected proxies.
+	 */
+	private void expunge() {
+		Reference reference;
+		while ((reference = queue.poll()) != null) {
+			ProxyReference proxy = (ProxyReference) reference;
+
+			proxies.remove(proxy.key, proxy);
+		}
+	}
+
+	/**
+	 * Key of a proxy.
+	 */
+	private static abstract class Key {
+
+		private final int hash;
+
+		private final Object factory;
+
+		private final Object evaluator;
+
+		/**
+		 * Create a key.
+		 * 
+		 * @param object
+		 *            target object
+		 * @param factory
+		 *            the factory
+		 * @param evaluator
+		 *            the evaluator
+		 */
+		Key(Object object, Object factory, Object evaluator) {
+			this.factory = factory;
+			this.evaluator = evaluator;
+
+			int hash = System.identityHashCode(object);
+			hash = 31 * hash + System.identityHashCode(factory);
+			hash = 31 * hash + System.identityHashCode(evaluator);
+			this.hash = hash;
+		}
+
+		/**
+		 * Get the target object.
+		 * 
+		 * @return target, <code>null</code> if already collected
+		 */
+		abstract Object getObject();
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+
+			if (hash != key.hash || factory != key.factory
+					|| evaluator != key.evaluator) {
+				return false;
+			}
+			Object object = getObject();
+			return object != null && object == key.getObject();
+		}
+	}
+
+	/**
+	 * Key referencing its target object strongly, used for lookups only.
+	 */
+	private static class StrongKey extends Key {
+
+		private final Object object;
+
+		/**
+		 * Create a strong key.
+		 * 
+		 * @param object
+		 *            target object
+		 * @param factory
+		 *            the factory
+		 * @param evaluator
+		 *            the evaluator
+		 */
+		StrongKey(Object object, Object factory, Object evaluator) {
+			super(object, factory, evaluator);
+
+			this.object = object;
+		}
+
+		Object getObject() {
+			return object;
+		}
+	}
+
+	/**
+	 * Key referencing its target object weakly, as it is kept in the registry.
+	 */
+	private static class WeakKey extends Key {
+
+		private final WeakReference object;
+
+		/**
+		 * Create a weak key.
+		 * 
+		 * @param object
+		 *            target object
+		 * @param factory
+		 *            the factory
+		 * @param evaluator
+		 *            the evaluator
+		 */
+		WeakKey(Object object, Object factory, Object evaluator) {
+			super(object, factory, evaluator);
+
+			this.object = new WeakReference(object);
+		}
+
+		Object getObject() {
+			return object.get();
+		}
+	}
+
+	/**
+	 * Weak reference to a registered proxy.
+	 */
+	private static class ProxyReference extends WeakReference {
+
+		final Key key;
+
+		/**
+		 * Create a reference.
+		 * 
+		 * @param proxy
+		 *            the proxy
+		 * @param key
+		 *            key of the proxy
+		 * @param queue
+		 *            queue to register with
+		 */
+		ProxyReference(Object proxy, Key key, ReferenceQueue queue) {
+			super(proxy, queue);
+
+			this.key = key;
+		}
+	}
+}
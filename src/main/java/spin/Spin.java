@@ -18,7 +18,9 @@
  */
 package spin;
 
+import spin.off.AsyncSpinOffEvaluator;
 import spin.off.SpinOffEvaluator;
+import spin.over.AsyncSpinOverEvaluator;
 import spin.over.SpinOverEvaluator;
 import spin.proxy.JDKProxyFactory;
 
@@ -63,12 +65,26 @@ import spin.proxy.JDKProxyFactory;
  */
 public class Spin {
 
-	private static ProxyFactory defaultProxyFactory = new JDKProxyFactory();
+	/**
+	 * The built-in default factory of proxies, giving way to registered
+	 * factories.
+	 */
+	private static final ProxyFactory builtinProxyFactory = new JDKProxyFactory();
+
+	private static ProxyFactory defaultProxyFactory = builtinProxyFactory;
 
 	private static Evaluator defaultOffEvaluator = new SpinOffEvaluator();
 
 	private static Evaluator defaultOverEvaluator = new SpinOverEvaluator();
 
+	private static final ProxyRegistry registry = new ProxyRegistry();
+
+	private static final JDKProxyFactory asyncProxyFactory = new JDKProxyFactory();
+
+	private static final Evaluator asyncOffEvaluator = new AsyncSpinOffEvaluator();
+
+	private static final Evaluator asyncOverEvaluator = new AsyncSpinOverEvaluator();
+
 	private Object proxy;
 
 	/**
@@ -123,38 +139,143 @@ public class Spin {
 	 * Convenience method to spin-off the given object from Swing. <p/>
 	 * <p>
 	 * The returned object can safely be casted to any interface the given
-	 * object implements.
+	 * object implements. As long as it is referenced, the same proxy is
+	 * returned for repeated calls with the same object.
 	 * </p>
 	 * 
 	 * @param object
 	 *            the object to spin-off
 	 * @return proxy for the given object
+	 * @see SpinProxy
+	 * @see ProxyRegistry
 	 * @see #setDefaultProxyFactory(ProxyFactory)
 	 * @see #setDefaultOffEvaluator(Evaluator)
 	 */
 	public static Object off(Object object) {
-		return new Spin(object, defaultProxyFactory, defaultOffEvaluator)
-				.getProxy();
+		return registry.getProxy(object, getProxyFactory(object),
+				defaultOffEvaluator);
+	}
+
+	/**
+	 * Convenience method to spin-off the given object from Swing
+	 * asynchronously. <br>
+	 * The returned object implements the given interface, whose methods
+	 * returning a <code>CompletableFuture</code>,
+	 * <code>CompletionStage</code> or <code>Future</code> return immediately
+	 * without dispatching events, completing the future on the EDT. The given object does not have
+	 * to implement the interface, but must have public methods with equal
+	 * names and parameter types.
+	 * 
+	 * @param object
+	 *            the object to spin-off
+	 * @param type
+	 *            interface to implement
+	 * @return proxy for the given object
+	 * @see AsyncSpinOffEvaluator
+	 */
+	public static Object offAsync(Object object, Class type) {
+		if (object == null) {
+			throw new IllegalArgumentException("object must not be null");
+		}
+		if (type == null) {
+			throw new IllegalArgumentException("type must not be null");
+		}
+
+		return asyncProxyFactory.createProxy(object, type, asyncOffEvaluator);
 	}
 
 	/**
 	 * Convenience method to spin-over the given object with Swing. <br>
 	 * The returned object can safely be casted to any interface the given
-	 * object implements.
+	 * object implements. As long as it is referenced, the same proxy is
+	 * returned for repeated calls with the same object.
 	 * 
 	 * @param object
 	 *            the object to spin-over
 	 * @return proxy for the given object
+	 * @see SpinProxy
+	 * @see ProxyRegistry
 	 * @see #setDefaultProxyFactory(ProxyFactory)
 	 * @see #setDefaultOverEvaluator(Evaluator)
 	 */
 	public static Object over(Object object) {
-		return new Spin(object, defaultProxyFactory, defaultOverEvaluator)
-				.getProxy();
+		return registry.getProxy(object, getProxyFactory(object),
+				defaultOverEvaluator);
+	}
+
+	/**
+	 * Convenience method to spin-over the given object with Swing
+	 * asynchronously. <br>
+	 * The returned object implements the given interface, whose methods
+	 * returning a <code>CompletableFuture</code>,
+	 * <code>CompletionStage</code> or <code>Future</code> return immediately
+	 * without waiting for the EDT, completing the future on the EDT. The given
+	 * object does not have to implement the interface, but must have public
+	 * methods with equal names and parameter types.
+	 * 
+	 * @param object
+	 *            the object to spin-over
+	 * @param type
+	 *            interface to implement
+	 * @return proxy for the given object
+	 * @see AsyncSpinOverEvaluator
+	 */
+	public static Object overAsync(Object object, Class type) {
+		if (object == null) {
+			throw new IllegalArgumentException("object must not be null");
+		}
+		if (type == null) {
+			throw new IllegalArgumentException("type must not be null");
+		}
+
+		return asyncProxyFactory.createProxy(object, type, asyncOverEvaluator);
+	}
+
+	/**
+	 * Get the factory of proxies for the given object, preferring a proxy
+	 * generated at compile time unless a default factory was set explicitly.
+	 * 
+	 * @param object
+	 *            object to get factory for
+	 * @return factory of proxies
+	 * @see ProxyFactory#getRegisteredProxyFactory(Class)
+	 */
+	private static ProxyFactory getProxyFactory(Object object) {
+		if (object != null && defaultProxyFactory == builtinProxyFactory) {
+			ProxyFactory factory = ProxyFactory
+					.getRegisteredProxyFactory(object.getClass());
+			if (factory != null) {
+				return factory;
+			}
+		}
+		return defaultProxyFactory;
+	}
+
+	/**
+	 * Get the object intercepted by the given proxy, created with the default
+	 * factory of proxies, a factory generated at compile time or by
+	 * {@link #offAsync(Object, Class)} and {@link #overAsync(Object, Class)}.
+	 * 
+	 * @param object
+	 *            proxy or any other object
+	 * @return intercepted object, or the given object if it is not a proxy
+	 */
+	public static Object getObject(Object object) {
+		ProxyFactory factory = getProxyFactory(object);
+		if (!factory.isProxy(object)) {
+			// proxies of all JDK factories are alike
+			factory = builtinProxyFactory;
+			if (!factory.isProxy(object)) {
+				return object;
+			}
+		}
+		return factory.getObject(object);
 	}
 
 	/**
-	 * Set the default factory of proxies.
+	 * Set the default factory of proxies. <br>
+	 * An explicitly set factory is used for all objects, even for those with
+	 * a registered factory of proxies generated at compile time.
 	 * 
 	 * @param factory
 	 *            proxy factore to use as default
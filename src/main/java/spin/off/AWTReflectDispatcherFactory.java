@@ -27,10 +27,11 @@ import javax.swing.SwingUtilities;
 
 /**
  * A factory of <code>Dispatcher</code>s which uses reflection to AWT
- * internals to dispatch events - used as default by <em>Spin</em> for
- * spin-off. <br>
- * Once Swing offers an official way to start an event pump this class should be
- * replaced by a less intrusive solution.
+ * internals to dispatch events. <br>
+ * Superseded by the official way to start an event pump, which is used as
+ * default by <em>Spin</em> for spin-off.
+ * 
+ * @see SecondaryLoopDispatcherFactory
  */
 public class AWTReflectDispatcherFactory implements DispatcherFactory {
 
@@ -0,0 +1,148 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+
+import spin.Evaluator;
+import spin.Futures;
+import spin.Implementations;
+import spin.Invocation;
+import spin.Spin;
+
+/**
+ * An evaluator for asynchronous spin-off without a nested dispatch of events.
+ * <p>
+ * Invocations of methods returning a {@link CompletableFuture},
+ * {@link CompletionStage} or {@link Future} return a future immediately,
+ * while the object's method with equal name and parameter types is evaluated
+ * by a {@link Starter}. The future is completed on the EDT with the method's
+ * result - if the method itself returns a <code>CompletionStage</code>, with
+ * the result of the latter.
+ * </p>
+ * <p>
+ * Thus the object does not have to implement the proxied interface:
+ * 
+ * <pre>
+ * AsyncBean bean = (AsyncBean) Spin.offAsync(new BeanImpl(), AsyncBean.class);
+ * bean.load(id).thenAccept(...);
+ * </pre>
+ * 
+ * All other invocations are passed to a synchronous evaluator.
+ * </p>
+ * 
+ * @see Implementations
+ * @see Futures
+ * @see spin.proxy.JDKProxyFactory#createProxy(Object, Class, Evaluator)
+ */
+public class AsyncSpinOffEvaluator extends Evaluator {
+
+	/**
+	 * The starter for asynchronous evaluation, <code>null</code> for the
+	 * default.
+	 */
+	private Starter starter;
+
+	/**
+	 * The evaluator of synchronous invocations, <code>null</code> for the
+	 * default.
+	 */
+	private Evaluator evaluator;
+
+	/**
+	 * Create an evaluator using the default starter of
+	 * {@link SpinOffEvaluator} and the default spin-off evaluator for
+	 * synchronous invocations.
+	 * 
+	 * @see SpinOffEvaluator#setDefaultStarter(Starter)
+	 * @see Spin#setDefaultOffEvaluator(Evaluator)
+	 */
+	public AsyncSpinOffEvaluator() {
+		this(null, null);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param starter
+	 *            starter, <code>null</code> for the default
+	 * @param evaluator
+	 *            evaluator of synchronous invocations, <code>null</code> for
+	 *            the default
+	 */
+	public AsyncSpinOffEvaluator(Starter starter, Evaluator evaluator) {
+		this.starter = starter;
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Spin the given invocation off asynchronously if its method returns a
+	 * future.
+	 * 
+	 * @param invocation
+	 *            invocation to spin-off
+	 */
+	public void evaluate(Invocation invocation) throws Throwable {
+		Method method = invocation.getMethod();
+
+		Method implementation = Implementations.get(invocation.getObject()
+				.getClass(), method);
+		if (implementation != method) {
+			invocation.setMethod(implementation);
+		}
+
+		if (Futures.isAsync(method)) {
+			invocation.setResult(start(invocation.copy()));
+		} else {
+			Evaluator evaluator = this.evaluator;
+			if (evaluator == null) {
+				evaluator = Spin.getDefaultOffEvaluator();
+			}
+			evaluator.evaluate(invocation);
+		}
+	}
+
+	/**
+	 * Start the evaluation of the given invocation.
+	 * 
+	 * @param invocation
+	 *            invocation to evaluate
+	 * @return future of the result
+	 */
+	private CompletableFuture start(final Invocation invocation) {
+		final CompletableFuture future = new CompletableFuture();
+
+		Starter starter = this.starter;
+		if (starter == null) {
+			starter = SpinOffEvaluator.getDefaultStarter();
+		}
+		starter.start(new Runnable() {
+			public void run() {
+				invocation.evaluate();
+
+				Futures.complete(future, invocation);
+			}
+		});
+
+		return future;
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.Invocation;
+
+/**
+ * An evaluator confining each object to a single thread at a time. <br>
+ * All invocations on an object - whether from the EDT or any other thread -
+ * are evaluated in order on the object's lane of a {@link StripedStarter}.
+ * Invocations from the EDT are spun off while events are dispatched, other
+ * threads wait for the evaluation to complete. Invocations from the lane
+ * itself are evaluated directly, so confined objects may call each other as
+ * long as no two lanes wait for each other. <br>
+ * Spin-offs from the EDT can be configured and cancelled as with a
+ * {@link SpinOffEvaluator}, the settings apply to all lanes.
+ * 
+ * <pre>
+ * Spin.setDefaultOffEvaluator(new ConfinedEvaluator());
+ * </pre>
+ */
+public class ConfinedEvaluator extends Evaluator {
+
+	private StripedStarter starter;
+
+	/**
+	 * The evaluators spinning off from the EDT, one for each lane.
+	 */
+	private SpinOffEvaluator[] evaluators;
+
+	/**
+	 * Create an evaluator with a lane for each available processor.
+	 */
+	public ConfinedEvaluator() {
+		this(new StripedStarter());
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param starter
+	 *            starter of lanes
+	 */
+	public ConfinedEvaluator(StripedStarter starter) {
+		if (starter == null) {
+			throw new IllegalArgumentException("starter must not be null");
+		}
+		this.starter = starter;
+
+		evaluators = new SpinOffEvaluator[starter.getLaneCount()];
+		for (int e = 0; e < evaluators.length; e++) {
+			evaluators[e] = new SpinOffEvaluator(starter.getLane(e));
+		}
+	}
+
+	/**
+	 * Evaluate the given invocation on the lane of its object.
+	 * 
+	 * @param invocation
+	 *            invocation to evaluate
+	 */
+	public void evaluate(final Invocation invocation) throws Throwable {
+		int index = starter.indexOf(invocation.getObject());
+
+		if (starter.isCurrentLane(index)) {
+			invocation.evaluate();
+		} else if (SwingUtilities.isEventDispatchThread()) {
+			evaluators[index].evaluate(invocation);
+		} else {
+			final Object lock = new Object();
+			starter.getLane(index).start(new Runnable() {
+				public void run() {
+					try {
+						invocation.evaluate();
+					} finally {
+						synchronized (lock) {
+							lock.notifyAll();
+						}
+					}
+				}
+			});
+
+			boolean interrupted = false;
+			synchronized (lock) {
+				while (!invocation.isEvaluated()) {
+					try {
+						lock.wait();
+					} catch (InterruptedException ex) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Get the priority of spin-offs from the EDT.
+	 * 
+	 * @return priority
+	 * @see SpinOffEvaluator#getPriority()
+	 */
+	public int getPriority() {
+		return evaluators[0].getPriority();
+	}
+
+	/**
+	 * Set the priority of spin-offs from the EDT.
+	 * 
+	 * @param priority
+	 *            priority
+	 * @see SpinOffEvaluator#setPriority(int)
+	 */
+	public void setPriority(int priority) {
+		for (int e = 0; e < evaluators.length; e++) {
+			evaluators[e].setPriority(priority);
+		}
+	}
+
+	/**
+	 * Get the maximum window to park the EDT before dispatching events.
+	 * 
+	 * @return window in nanoseconds, <code>0</code> if disabled
+	 * @see SpinOffEvaluator#getParkWindow()
+	 */
+	public long getParkWindow() {
+		return evaluators[0].getParkWindow();
+	}
+
+	/**
+	 * Set the maximum window to park the EDT before dispatching events.
+	 * 
+	 * @param parkWindow
+	 *            window in nanoseconds, <code>0</code> to disable parking
+	 * @see SpinOffEvaluator#setParkWindow(long)
+	 */
+	public void setParkWindow(long parkWindow) {
+		for (int e = 0; e < evaluators.length; e++) {
+			evaluators[e].setParkWindow(parkWindow);
+		}
+	}
+
+	/**
+	 * Get the timeout for spin-offs from the EDT.
+	 * 
+	 * @return timeout in milliseconds, <code>0</code> for none
+	 * @see SpinOffEvaluator#getTimeout()
+	 */
+	public long getTimeout() {
+		return evaluators[0].getTimeout();
+	}
+
+	/**
+	 * Set the timeout for spin-offs from the EDT.
+	 * 
+	 * @param timeout
+	 *            timeout in milliseconds, <code>0</code> for none
+	 * @see SpinOffEvaluator#setTimeout(long)
+	 */
+	public void setTimeout(long timeout) {
+		for (int e = 0; e < evaluators.length; e++) {
+			evaluators[e].setTimeout(timeout);
+		}
+	}
+
+	/**
+	 * Cancel all spin-offs from the EDT in progress of invocations on the given
+	 * object.
+	 * 
+	 * @param object
+	 *            proxy or intercepted object to cancel invocations on
+	 * @see SpinOffEvaluator#cancel(Object)
+	 */
+	public void cancel(Object object) {
+		for (int e = 0; e < evaluators.length; e++) {
+			evaluators[e].cancel(object);
+		}
+	}
+
+	/**
+	 * Cancel all spin-offs from the EDT in progress.
+	 * 
+	 * @see SpinOffEvaluator#cancelAll()
+	 */
+	public void cancelAll() {
+		for (int e = 0; e < evaluators.length; e++) {
+			evaluators[e].cancelAll();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>Starter</code> backed by a pool of reusable worker threads.
+ * <p>
+ * Runnables are handed to a {@link ThreadPoolExecutor} with a bounded queue:
+ * up to the core size threads are started, further runnables are queued and
+ * only if the queue is full additional threads up to the maximum size are
+ * started. Idle threads - including core threads - are reaped after the
+ * keep-alive time.
+ * </p>
+ * <p>
+ * If neither a thread nor room in the queue is available, the runnable is
+ * rejected. The default policy runs it in the calling thread, i.e. the EDT is
+ * blocked until completion, which is the behaviour without spin-off. Any
+ * other {@link RejectedExecutionHandler} can be configured instead.
+ * </p>
+ * 
+ * @see SpinOffEvaluator#setDefaultStarter(Starter)
+ */
+public class ExecutorStarter implements Starter {
+
+	/**
+	 * For autonumbering pooled threads.
+	 */
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Create a starter with 4 core and 32 maximum threads, a queue of 32
+	 * runnables and a keep-alive time of 60 seconds.
+	 */
+	public ExecutorStarter() {
+		this(4, 32, 60, TimeUnit.SECONDS, 32);
+	}
+
+	/**
+	 * Create a starter running rejected runnables in the calling thread.
+	 * 
+	 * @param coreSize
+	 *            count of threads to start before queueing
+	 * @param maximumSize
+	 *            maximum count of threads
+	 * @param keepAlive
+	 *            time after which idle threads are reaped
+	 * @param unit
+	 *            unit of keep-alive time
+	 * @param capacity
+	 *            capacity of the queue
+	 */
+	public ExecutorStarter(int coreSize, int maximumSize, long keepAlive,
+			TimeUnit unit, int capacity) {
+		this(coreSize, maximumSize, keepAlive, unit, capacity,
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Create a starter.
+	 * 
+	 * @param coreSize
+	 *            count of threads to start before queueing
+	 * @param maximumSize
+	 *            maximum count of threads
+	 * @param keepAlive
+	 *            time after which idle threads are reaped
+	 * @param unit
+	 *            unit of keep-alive time
+	 * @param capacity
+	 *            capacity of the queue
+	 * @param rejection
+	 *            handler of rejected runnables
+	 */
+	public ExecutorStarter(int coreSize, int maximumSize, long keepAlive,
+			TimeUnit unit, int capacity,
+			final RejectedExecutionHandler rejection) {
+		if (rejection == null) {
+			throw new IllegalArgumentException("rejection must not be null");
+		}
+
+		executor = new ThreadPoolExecutor(coreSize, maximumSize, keepAlive,
+				unit, new ArrayBlockingQueue(capacity), new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(SimpleStarter.threadGroup,
+								runnable, "Spin-Pool-"
+										+ threadNumber.getAndIncrement());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new RejectedExecutionHandler() {
+					public void rejectedExecution(Runnable runnable,
+							ThreadPoolExecutor executor) {
+						rejected.incrementAndGet();
+
+						rejection.rejectedExecution(runnable, executor);
+					}
+				});
+		executor.allowCoreThreadTimeOut(keepAlive > 0);
+	}
+
+	/**
+	 * Start a runnable on a pooled thread.
+	 * 
+	 * @param runnable
+	 *            runnable to start
+	 */
+	public void start(Runnable runnable) {
+		executor.execute(runnable);
+	}
+
+	/**
+	 * Get the count of runnables waiting for a thread.
+	 * 
+	 * @return count of queued runnables
+	 */
+	public int getQueuedCount() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Get the approximate count of threads running a runnable.
+	 * 
+	 * @return count of active threads
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * Get the approximate count of completed runnables.
+	 * 
+	 * @return count of completed runnables
+	 */
+	public long getCompletedCount() {
+		return executor.getCompletedTaskCount();
+	}
+
+	/**
+	 * Get the count of rejected runnables.
+	 * 
+	 * @return count of rejected runnables
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Get the current count of threads in the pool.
+	 * 
+	 * @return count of threads
+	 */
+	public int getPoolSize() {
+		return executor.getPoolSize();
+	}
+
+	/**
+	 * Shut down this starter - already started runnables are completed,
+	 * further ones are rejected.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,382 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.Invocation;
+
+/**
+ * An evaluator for fire-and-forget spin-off of <code>void</code> methods. <br>
+ * Invocations of <code>void</code> methods return immediately - they are
+ * queued for their object and evaluated in order by a single worker, that
+ * drains all queued invocations in one pass. Invocations on different objects
+ * are evaluated independently. Throwables of queued invocations are passed to
+ * an {@link Thread.UncaughtExceptionHandler}. <br>
+ * Invocations of all other methods are queued behind the pending invocations
+ * of their object too, the caller waits for their evaluation by the worker -
+ * dispatching events if called on the EDT. Thus waiting does not occupy a
+ * thread of the starter.
+ * 
+ * <pre>
+ * Spin.setDefaultOffEvaluator(new PipelinedSpinOffEvaluator());
+ * </pre>
+ * 
+ * @see spin.MethodMetadata#isVoid()
+ */
+public class PipelinedSpinOffEvaluator extends Evaluator {
+
+	/**
+	 * The pipelines keyed by identity of their object.
+	 */
+	private final ConcurrentMap pipelines = new ConcurrentHashMap();
+
+	/**
+	 * The factory of dispatchers for waiting invocations on the EDT,
+	 * <code>null</code> for the default.
+	 */
+	private DispatcherFactory dispatcherFactory;
+
+	/**
+	 * The starter of workers, <code>null</code> for the default.
+	 */
+	private Starter starter;
+
+	/**
+	 * The handler of throwables, <code>null</code> for the handler of the
+	 * worker thread.
+	 */
+	private Thread.UncaughtExceptionHandler handler;
+
+	/**
+	 * Create an evaluator using the default dispatcher factory and starter of
+	 * {@link SpinOffEvaluator}.
+	 * 
+	 * @see SpinOffEvaluator#setDefaultDispatcherFactory(DispatcherFactory)
+	 * @see SpinOffEvaluator#setDefaultStarter(Starter)
+	 */
+	public PipelinedSpinOffEvaluator() {
+		this(null, null, null);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param dispatcherFactory
+	 *            factory of dispatchers for waiting invocations on the EDT,
+	 *            <code>null</code> for the default
+	 * @param starter
+	 *            starter of workers, <code>null</code> for the default
+	 * @param handler
+	 *            handler of throwables, <code>null</code> for the handler of
+	 *            the worker thread
+	 */
+	public PipelinedSpinOffEvaluator(DispatcherFactory dispatcherFactory,
+			Starter starter, Thread.UncaughtExceptionHandler handler) {
+		this.dispatcherFactory = dispatcherFactory;
+		this.starter = starter;
+		this.handler = handler;
+	}
+
+	public void evaluate(Invocation invocation) throws Throwable {
+		if (!invocation.getMetadata().isVoid()) {
+			QueuedInvocation queued = new QueuedInvocation(invocation);
+
+			enqueue(queued);
+			queued.await();
+
+			invocation.setResult(queued.getResult());
+			invocation.setThrowable(queued.getThrowable());
+			return;
+		}
+
+		enqueue(invocation.copy());
+	}
+
+	/**
+	 * Enqueue the given element in the pipeline of its object.
+	 * 
+	 * @param element
+	 *            copy of a void invocation or a queued invocation
+	 */
+	private void enqueue(Invocation element) {
+		ObjectKey key = new ObjectKey(element.getObject());
+		while (true) {
+			Pipeline pipeline = (Pipeline) pipelines.get(key);
+			if (pipeline == null) {
+				pipeline = new Pipeline(key);
+
+				Pipeline existing = (Pipeline) pipelines.putIfAbsent(key,
+						pipeline);
+				if (existing != null) {
+					pipeline = existing;
+				}
+			}
+
+			if (pipeline.offer(element)) {
+				return;
+			}
+			// pipeline was retired concurrently
+		}
+	}
+
+	/**
+	 * Handle the throwable of a queued invocation.
+	 * 
+	 * @param invocation
+	 *            the invocation
+	 */
+	private void onThrowable(Invocation invocation) {
+		Thread thread = Thread.currentThread();
+
+		Thread.UncaughtExceptionHandler handler = this.handler;
+		if (handler == null) {
+			handler = thread.getUncaughtExceptionHandler();
+		}
+		handler.uncaughtException(thread, invocation.getThrowable());
+	}
+
+	/**
+	 * Key of an object by identity.
+	 */
+	private static class ObjectKey {
+
+		private final Object object;
+
+		/**
+		 * Create a key.
+		 * 
+		 * @param object
+		 *            the object
+		 */
+		ObjectKey(Object object) {
+			this.object = object;
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(object);
+		}
+
+		public boolean equals(Object other) {
+			return other instanceof ObjectKey
+					&& ((ObjectKey) other).object == object;
+		}
+	}
+
+	/**
+	 * The queued invocations of a single object.
+	 */
+	private class Pipeline implements Prioritized, Targeted {
+
+		private final ObjectKey key;
+
+		/**
+		 * The queued invocations - guarded by this pipeline.
+		 */
+		private final LinkedList invocations = new LinkedList();
+
+		/**
+		 * Is a worker started for this pipeline.
+		 */
+		private boolean started;
+
+		/**
+		 * Is this pipeline retired, i.e. removed from the pipelines.
+		 */
+		private boolean retired;
+
+		/**
+		 * Create a pipeline.
+		 * 
+		 * @param key
+		 *            key of the object
+		 */
+		Pipeline(ObjectKey key) {
+			this.key = key;
+		}
+
+		/**
+		 * Offer an invocation, starting a worker if none is started yet.
+		 * 
+		 * @param invocation
+		 *            invocation to queue
+		 * @return <code>false</code> if this pipeline is retired
+		 */
+		boolean offer(Invocation invocation) {
+			synchronized (this) {
+				if (retired) {
+					return false;
+				}
+
+				invocations.add(invocation);
+				if (started) {
+					return true;
+				}
+				started = true;
+			}
+
+			Starter starter = PipelinedSpinOffEvaluator.this.starter;
+			if (starter == null) {
+				starter = SpinOffEvaluator.getDefaultStarter();
+			}
+			starter.start(this);
+
+			return true;
+		}
+
+		/**
+		 * Pipelines are not waited for.
+		 * 
+		 * @return {@link Priority#BACKGROUND}
+		 */
+		public int getPriority() {
+			return Priority.BACKGROUND;
+		}
+
+		public Object getTarget() {
+			return key.object;
+		}
+
+		/**
+		 * Drain all queued invocations, retiring this pipeline when empty.
+		 */
+		public void run() {
+			while (true) {
+				Invocation invocation;
+				synchronized (this) {
+					if (invocations.isEmpty()) {
+						retired = true;
+						pipelines.remove(key, this);
+						return;
+					}
+					invocation = (Invocation) invocations.removeFirst();
+				}
+
+				if (invocation instanceof QueuedInvocation) {
+					((QueuedInvocation) invocation).evaluateQueued();
+				} else {
+					invocation.evaluate();
+
+					if (invocation.getThrowable() != null) {
+						onThrowable(invocation);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * An invocation of a non-void method, that is queued in the pipeline of its
+	 * object, while the invoking thread waits for its evaluation by the worker.
+	 */
+	private class QueuedInvocation extends Invocation {
+
+		/**
+		 * Is the evaluation by the worker done - guarded by this invocation.
+		 */
+		private boolean done;
+
+		/**
+		 * Did the invoking thread stop waiting - guarded by this invocation.
+		 */
+		private boolean abandoned;
+
+		/**
+		 * The dispatcher of the waiting EDT, <code>null</code> if not waiting
+		 * on the EDT - guarded by this invocation.
+		 */
+		private Dispatcher dispatcher;
+
+		/**
+		 * Create an invocation.
+		 * 
+		 * @param invocation
+		 *            original invocation
+		 */
+		QueuedInvocation(Invocation invocation) {
+			super(invocation.getObject(), invocation.getMetadata(), invocation
+					.getArguments());
+		}
+
+		/**
+		 * Wait for the evaluation, dispatching events if called on the EDT.
+		 * 
+		 * @throws Throwable
+		 */
+		void await() throws Throwable {
+			if (SwingUtilities.isEventDispatchThread()) {
+				DispatcherFactory dispatcherFactory = PipelinedSpinOffEvaluator.this.dispatcherFactory;
+				if (dispatcherFactory == null) {
+					dispatcherFactory = SpinOffEvaluator
+							.getDefaultDispatcherFactory();
+				}
+
+				Dispatcher dispatcher = dispatcherFactory.createDispatcher();
+				synchronized (this) {
+					if (done) {
+						return;
+					}
+					this.dispatcher = dispatcher;
+				}
+				dispatcher.start();
+			} else {
+				synchronized (this) {
+					try {
+						while (!done) {
+							wait();
+						}
+					} catch (InterruptedException ex) {
+						// don't evaluate if not yet started
+						abandoned = true;
+						throw ex;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Evaluate on the worker and notify the invoking thread.
+		 */
+		void evaluateQueued() {
+			synchronized (this) {
+				if (abandoned) {
+					return;
+				}
+			}
+
+			evaluate();
+
+			Dispatcher dispatcher;
+			synchronized (this) {
+				done = true;
+				notifyAll();
+
+				dispatcher = this.dispatcher;
+			}
+			if (dispatcher != null) {
+				dispatcher.stop();
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The priority of spin-offs of the annotated method, overriding the priority
+ * of the evaluator. Higher values are more urgent.
+ * 
+ * @see PriorityStarter
+ * @see SpinOffEvaluator#setPriority(int)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Priority {
+
+	/**
+	 * Priority of work the EDT is waiting for.
+	 */
+	public static final int INTERACTIVE = 10;
+
+	/**
+	 * Priority of work without further information.
+	 */
+	public static final int NORMAL = 5;
+
+	/**
+	 * Priority of fire-and-forget or prefetch work.
+	 */
+	public static final int BACKGROUND = 0;
+
+	/**
+	 * The priority.
+	 * 
+	 * @return priority
+	 */
+	int value();
+}
@@ -0,0 +1,283 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>Starter</code> running runnables on a fixed count of threads, taking
+ * queued runnables in order of their priority. <br>
+ * Runnables implementing {@link Prioritized} provide their priority, all
+ * others have {@link Priority#NORMAL}. Spin-offs the EDT is waiting for are
+ * {@link Priority#INTERACTIVE} by default, fire-and-forget spin-offs
+ * {@link Priority#BACKGROUND}.
+ * <p>
+ * To prevent starvation queued runnables age: for each aging interval a
+ * runnable is waiting, its priority is raised by one. Runnables of equal
+ * effective priority are started in order.
+ * </p>
+ * 
+ * @see SpinOffEvaluator#setPriority(int)
+ * @see #getAverageWait(int)
+ */
+public class PriorityStarter implements Starter {
+
+	/**
+	 * For autonumbering pooled threads.
+	 */
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Aging interval in nanoseconds.
+	 */
+	private final long aging;
+
+	/**
+	 * Sequence of started runnables.
+	 */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * The waits keyed by priority.
+	 */
+	private final ConcurrentMap waits = new ConcurrentHashMap();
+
+	/**
+	 * Create a starter with a thread for each available processor and an aging
+	 * interval of 100 milliseconds.
+	 */
+	public PriorityStarter() {
+		this(Runtime.getRuntime().availableProcessors(), 100,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Create a starter.
+	 * 
+	 * @param threads
+	 *            count of threads
+	 * @param aging
+	 *            interval after which the priority of waiting runnables is
+	 *            raised by one
+	 * @param unit
+	 *            unit of aging interval
+	 */
+	public PriorityStarter(int threads, long aging, TimeUnit unit) {
+		if (aging <= 0) {
+			throw new IllegalArgumentException("aging must be positive");
+		}
+		this.aging = unit.toNanos(aging);
+
+		executor = new ThreadPoolExecutor(threads, threads, 60,
+				TimeUnit.SECONDS, new PriorityBlockingQueue(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(SimpleStarter.threadGroup,
+								runnable, "Spin-Priority-"
+										+ threadNumber.getAndIncrement());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Start a runnable according to its priority.
+	 * 
+	 * @param runnable
+	 *            runnable to start
+	 */
+	public void start(Runnable runnable) {
+		int priority = Priority.NORMAL;
+		if (runnable instanceof Prioritized) {
+			priority = ((Prioritized) runnable).getPriority();
+		}
+
+		executor.execute(new Task(runnable, priority));
+	}
+
+	/**
+	 * Get the average time runnables of the given priority waited to be
+	 * started.
+	 * 
+	 * @param priority
+	 *            the priority
+	 * @return average wait in nanoseconds
+	 */
+	public long getAverageWait(int priority) {
+		Wait wait = (Wait) waits.get(Integer.valueOf(priority));
+		if (wait == null) {
+			return 0;
+		}
+		return wait.getAverage();
+	}
+
+	/**
+	 * Get the count of started runnables of the given priority.
+	 * 
+	 * @param priority
+	 *            the priority
+	 * @return count of started runnables
+	 */
+	public long getStartedCount(int priority) {
+		Wait wait = (Wait) waits.get(Integer.valueOf(priority));
+		if (wait == null) {
+			return 0;
+		}
+		return wait.count.get();
+	}
+
+	/**
+	 * Get the count of runnables waiting to be started.
+	 * 
+	 * @return count of queued runnables
+	 */
+	public int getQueuedCount() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Shut down this starter - already started runnables are completed,
+	 * further ones are rejected.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Record the wait of a runnable.
+	 * 
+	 * @param priority
+	 *            priority of runnable
+	 * @param nanos
+	 *            wait in nanoseconds
+	 */
+	private void recordWait(int priority, long nanos) {
+		Integer key = Integer.valueOf(priority);
+
+		Wait wait = (Wait) waits.get(key);
+		if (wait == null) {
+			wait = new Wait();
+
+			Wait existing = (Wait) waits.putIfAbsent(key, wait);
+			if (existing != null) {
+				wait = existing;
+			}
+		}
+		wait.record(nanos);
+	}
+
+	/**
+	 * The waits of runnables of one priority.
+	 */
+	private static class Wait {
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final AtomicLong total = new AtomicLong();
+
+		/**
+		 * Record a wait.
+		 * 
+		 * @param nanos
+		 *            wait in nanoseconds
+		 */
+		void record(long nanos) {
+			total.addAndGet(nanos);
+			count.incrementAndGet();
+		}
+
+		/**
+		 * Get the average wait.
+		 * 
+		 * @return average in nanoseconds
+		 */
+		long getAverage() {
+			long count = this.count.get();
+			if (count == 0) {
+				return 0;
+			}
+			return total.get() / count;
+		}
+	}
+
+	/**
+	 * A queued runnable. <br>
+	 * Since all queued runnables age at the same rate, their order by
+	 * effective priority does not change over time: a runnable queued at time
+	 * <em>t</em> with priority <em>p</em> has rank <em>p * aging - t</em>.
+	 */
+	private class Task implements Runnable, Comparable {
+
+		private final Runnable runnable;
+
+		private final int priority;
+
+		private final long queued = System.nanoTime();
+
+		private final long rank;
+
+		private final long sequence;
+
+		/**
+		 * Create a task.
+		 * 
+		 * @param runnable
+		 *            runnable to run
+		 * @param priority
+		 *            priority of runnable
+		 */
+		Task(Runnable runnable, int priority) {
+			this.runnable = runnable;
+			this.priority = priority;
+
+			rank = priority * aging - queued;
+			sequence = PriorityStarter.this.sequence.getAndIncrement();
+		}
+
+		public void run() {
+			recordWait(priority, System.nanoTime() - queued);
+
+			runnable.run();
+		}
+
+		public int compareTo(Object object) {
+			Task task = (Task) object;
+			if (task == this) {
+				return 0;
+			}
+
+			long difference = rank - task.rank;
+			if (difference != 0) {
+				return difference > 0 ? -1 : 1;
+			}
+			return sequence < task.sequence ? -1 : 1;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.awt.EventQueue;
+import java.awt.SecondaryLoop;
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Factory of dispatchers using the public <code>java.awt.SecondaryLoop</code>
+ * API, thus neither requiring reflective access to AWT internals nor any
+ * reflection while dispatching events. <br>
+ * Loops are reused for subsequent spin-offs from the same EDT.
+ * 
+ * @see spin.off.SpinOffEvaluator#setDefaultDispatcherFactory(DispatcherFactory)
+ * @see AWTReflectDispatcherFactory
+ */
+public class SecondaryLoopDispatcherFactory implements DispatcherFactory {
+
+	/**
+	 * Maximum count of idle loops kept for reuse.
+	 */
+	private static final int MAX_IDLE = 4;
+
+	/**
+	 * The idle loops - guarded by this factory.
+	 */
+	private final List idle = new ArrayList();
+
+	/**
+	 * The EDT the idle loops were created on - guarded by this factory.
+	 */
+	private Thread thread;
+
+	public Dispatcher createDispatcher() {
+		return new SecondaryLoopDispatcher(acquireLoop());
+	}
+
+	/**
+	 * Acquire a loop, reusing an idle one if available.
+	 * 
+	 * @return loop
+	 */
+	private SecondaryLoop acquireLoop() {
+		synchronized (this) {
+			if (thread != Thread.currentThread()) {
+				// loops are bound to the EDT they were created on
+				idle.clear();
+				thread = Thread.currentThread();
+			}
+
+			if (!idle.isEmpty()) {
+				return (SecondaryLoop) idle.remove(idle.size() - 1);
+			}
+		}
+
+		EventQueue queue = Toolkit.getDefaultToolkit().getSystemEventQueue();
+		return queue.createSecondaryLoop();
+	}
+
+	/**
+	 * Release a loop for reuse.
+	 * 
+	 * @param loop
+	 *            loop to release
+	 */
+	private void releaseLoop(SecondaryLoop loop) {
+		synchronized (this) {
+			if (thread == Thread.currentThread() && idle.size() < MAX_IDLE) {
+				idle.add(loop);
+			}
+		}
+	}
+
+	/**
+	 * Dispatcher entering a secondary loop.
+	 */
+	private class SecondaryLoopDispatcher implements Dispatcher {
+
+		private final SecondaryLoop loop;
+
+		/**
+		 * Has this dispatcher been stopped - guarded by this dispatcher.
+		 */
+		private boolean stopped;
+
+		/**
+		 * Create a dispatcher.
+		 * 
+		 * @param loop
+		 *            loop to enter
+		 */
+		SecondaryLoopDispatcher(SecondaryLoop loop) {
+			this.loop = loop;
+		}
+
+		/**
+		 * Enter the loop - returns immediately if already stopped, as the loop
+		 * remembers a preceding exit.
+		 */
+		public void start() throws Throwable {
+			loop.enter();
+
+			synchronized (this) {
+				// if the EDT refuses to pump events (e.g. because of a
+				// sun.awt.AWTAutoShutdown)
+				// we can do nothing else but wait for stop() to be called
+				while (!stopped) {
+					wait();
+				}
+			}
+
+			releaseLoop(loop);
+		}
+
+		public void stop() {
+			synchronized (this) {
+				if (stopped) {
+					return;
+				}
+				stopped = true;
+
+				// notify possibly waiting start()
+				notifyAll();
+			}
+
+			loop.exit();
+		}
+	}
+}
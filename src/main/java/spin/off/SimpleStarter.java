@@ -18,6 +18,8 @@
  */
 package spin.off;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Simple implementation of a <code>Starter</code> that creates a new thread
  * for each invocation of {@link #start(Runnable)}.
@@ -27,20 +29,20 @@ public class SimpleStarter implements Starter {
 	/**
 	 * The threadGroup used for all threads.
 	 */
-	private static final ThreadGroup threadGroup = new ThreadGroup("spin");
+	static final ThreadGroup threadGroup = new ThreadGroup("spin");
 
 	/**
 	 * For autonumbering anonymous threads.
 	 */
-	private static int threadNumber;
+	private static final AtomicInteger threadNumber = new AtomicInteger();
 
 	/**
 	 * Get the next thread number.
 	 * 
 	 * @return next thread number
 	 */
-	private static synchronized int nextThreadNumber() {
-		return threadNumber++;
+	private static int nextThreadNumber() {
+		return threadNumber.getAndIncrement();
 	}
 
 	/**
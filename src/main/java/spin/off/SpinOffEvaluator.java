@@ -18,14 +18,43 @@
  */
 package spin.off;
 
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 import javax.swing.SwingUtilities;
 
 import spin.Invocation;
 import spin.Evaluator;
+import spin.MethodMetadata;
+import spin.Spin;
 
 /**
  * An evaluator for spin-off, i.e. all invocations are evaluated on another
  * thread than the EDT while further events are dispatched.
+ * <p>
+ * A spin-off can be limited in time, either for all invocations with
+ * {@link #setTimeout(long)} or for single methods by annotating them with
+ * {@link Timeout}. If it does not complete in time, its thread is interrupted
+ * and an {@link InvocationTimeoutException} is thrown to the caller. <br>
+ * Spin-offs in progress on a target object can be cancelled with
+ * {@link #cancel(Object)}, e.g. when a window is closed.
+ * </p>
+ * <p>
+ * For short invocations the dispatching of events can be avoided: with a
+ * park window set by {@link #setParkWindow(long)} the EDT is parked first,
+ * before events are dispatched if the invocation is not completed in time.
+ * The window adapts for each method to the observed durations of its
+ * invocations.
+ * </p>
  * 
  * @see spin.off.Starter
  * @see spin.off.DispatcherFactory
@@ -35,63 +64,100 @@ public class SpinOffEvaluator extends Evaluator {
 	/**
 	 * Default factory of dispatchers.
 	 */
-	private static DispatcherFactory defaultDispatcherFactory = new AWTReflectDispatcherFactory();
+	private static volatile DispatcherFactory defaultDispatcherFactory = new SecondaryLoopDispatcherFactory();
 
 	/**
 	 * Default starter for asynchronous evaluation.
 	 */
-	private static Starter defaultStarter = new SimpleStarter();
+	private static volatile Starter defaultStarter = new SimpleStarter();
 
 	/**
-	 * The factory of dispatchers.
+	 * The factory of dispatchers, <code>null</code> for the default.
 	 */
 	private DispatcherFactory dispatcherFactory;
 
 	/**
-	 * The starter for asynchronous evaluation.
+	 * The starter for asynchronous evaluation, <code>null</code> for the
+	 * default.
 	 */
 	private Starter starter;
 
+	/**
+	 * The timeout in milliseconds.
+	 */
+	private volatile long timeout;
+
+	/**
+	 * The priority of spin-offs.
+	 */
+	private volatile int priority = Priority.INTERACTIVE;
+
+	/**
+	 * The maximum park window in nanoseconds.
+	 */
+	private volatile long parkWindow;
+
+	/**
+	 * The durations of invocations keyed by the metadata of their method,
+	 * grouped by declaring class so proxied classes can still be unloaded.
+	 */
+	private final ClassValue durations = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new ConcurrentHashMap();
+		}
+	};
+
+	private final AtomicLong parked = new AtomicLong();
+
+	private final AtomicLong dispatched = new AtomicLong();
+
+	/**
+	 * The spin-offs in progress.
+	 */
+	private final Set evaluations = ConcurrentHashMap.newKeySet();
+
 	/**
 	 * Create an evaluator for spin-off using the default dispatcherFactory and
-	 * starter.
+	 * starter. Changes of the defaults apply to this evaluator too.
 	 * 
 	 * @see #setDefaultStarter(Starter)
 	 * @see #setDefaultDispatcherFactory(DispatcherFactory)
 	 */
 	public SpinOffEvaluator() {
-		this(defaultDispatcherFactory, defaultStarter);
+		this(null, null);
 	}
 
 	/**
-	 * Create an evaluator for spin-off using the default starter.
+	 * Create an evaluator for spin-off using the default starter. Changes of
+	 * the default apply to this evaluator too.
 	 * 
 	 * @param dispatcherFactory
 	 *            factory of dispatchers
 	 * @see #setDefaultStarter(Starter)
 	 */
 	public SpinOffEvaluator(DispatcherFactory dispatcherFactory) {
-		this(dispatcherFactory, defaultStarter);
+		this(dispatcherFactory, null);
 	}
 
 	/**
 	 * Create an evaluator for spin-off using the default dispatcherFactory.
+	 * Changes of the default apply to this evaluator too.
 	 * 
 	 * @param starter
 	 *            starter
 	 * @see #setDefaultDispatcherFactory(DispatcherFactory)
 	 */
 	public SpinOffEvaluator(Starter starter) {
-		this(defaultDispatcherFactory, starter);
+		this(null, starter);
 	}
 
 	/**
 	 * Create an evaluator for spin-off.
 	 * 
 	 * @param dispatcherFactory
-	 *            factory of dispatchers
+	 *            factory of dispatchers, <code>null</code> for the default
 	 * @param starter
-	 *            starter
+	 *            starter, <code>null</code> for the default
 	 */
 	public SpinOffEvaluator(DispatcherFactory dispatcherFactory, Starter starter) {
 		this.dispatcherFactory = dispatcherFactory;
@@ -107,17 +173,55 @@ public class SpinOffEvaluator extends Evaluator {
 	public final void evaluate(final Invocation invocation) throws Throwable {
 
 		if (SwingUtilities.isEventDispatchThread()) {
-			final Dispatcher dispatcher = dispatcherFactory.createDispatcher();
+			DispatcherFactory dispatcherFactory = this.dispatcherFactory;
+			if (dispatcherFactory == null) {
+				dispatcherFactory = defaultDispatcherFactory;
+			}
+			Starter starter = this.starter;
+			if (starter == null) {
+				starter = defaultStarter;
+			}
 
-			starter.start(new Runnable() {
-				public void run() {
-					invocation.evaluate();
+			Evaluation evaluation = new Evaluation(invocation,
+					getPriority(invocation));
+			evaluations.add(evaluation);
+			try {
+				starter.start(evaluation);
+
+				ScheduledFuture timer = null;
+				long timeout = getTimeout(invocation);
+				if (timeout > 0) {
+					timer = Timeouts.schedule(evaluation, timeout);
+				}
+
+				long window = getParkWindow(invocation);
+				if (evaluation.park(window)) {
+					parked.incrementAndGet();
+				} else {
+					dispatched.incrementAndGet();
 
-					dispatcher.stop();
+					Dispatcher dispatcher = dispatcherFactory
+							.createDispatcher();
+					if (evaluation.setDispatcher(dispatcher)) {
+						dispatcher.start();
+					}
 				}
-			});
 
-			dispatcher.start();
+				if (timer != null) {
+					timer.cancel(false);
+				}
+
+				if (window >= 0) {
+					getDuration(invocation).update(evaluation.getDuration());
+				}
+			} finally {
+				evaluations.remove(evaluation);
+			}
+
+			Throwable cancellation = evaluation.getCancellation();
+			if (cancellation != null) {
+				throw cancellation;
+			}
 
 			if (!invocation.isEvaluated()) {
 				throw new Error("dispatcher stopped prematurely");
@@ -127,6 +231,212 @@ public class SpinOffEvaluator extends Evaluator {
 		}
 	}
 
+	/**
+	 * Get the priority of the given invocation.
+	 * 
+	 * @param invocation
+	 *            the invocation
+	 * @return priority
+	 */
+	private int getPriority(Invocation invocation) {
+		Priority priority = (Priority) invocation.getMetadata().getAnnotation(
+				Priority.class);
+		if (priority == null) {
+			return this.priority;
+		}
+		return priority.value();
+	}
+
+	/**
+	 * Get the priority of spin-offs.
+	 * 
+	 * @return priority
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Set the priority of spin-offs of methods not annotated with
+	 * {@link Priority}, {@link Priority#INTERACTIVE} by default.
+	 * 
+	 * @param priority
+	 *            priority
+	 * @see PriorityStarter
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Get the window to park for the given invocation.
+	 * 
+	 * @param invocation
+	 *            the invocation
+	 * @return window in nanoseconds, <code>-1</code> if parking is disabled
+	 */
+	private long getParkWindow(Invocation invocation) {
+		long parkWindow = this.parkWindow;
+		if (parkWindow == 0) {
+			return -1;
+		}
+
+		return getDuration(invocation).getWindow(parkWindow);
+	}
+
+	/**
+	 * Get the duration of invocations of the method of the given invocation.
+	 * 
+	 * @param invocation
+	 *            the invocation
+	 * @return the duration
+	 */
+	private Duration getDuration(Invocation invocation) {
+		MethodMetadata metadata = invocation.getMetadata();
+		ConcurrentMap durations = (ConcurrentMap) this.durations.get(metadata
+				.getMethod().getDeclaringClass());
+
+		Duration duration = (Duration) durations.get(metadata);
+		if (duration == null) {
+			duration = new Duration();
+
+			Duration existing = (Duration) durations.putIfAbsent(metadata,
+					duration);
+			if (existing != null) {
+				duration = existing;
+			}
+		}
+		return duration;
+	}
+
+	/**
+	 * Get the maximum window to park the EDT before dispatching events.
+	 * 
+	 * @return window in nanoseconds, <code>0</code> if disabled
+	 */
+	public long getParkWindow() {
+		return parkWindow;
+	}
+
+	/**
+	 * Set the maximum window to park the EDT before dispatching events, e.g.
+	 * <code>200000</code> for 200 microseconds. <br>
+	 * The actual window for each method is twice the average duration of its
+	 * invocations, limited by the given maximum. Methods whose invocations
+	 * take longer on average do not park at all.
+	 * 
+	 * @param parkWindow
+	 *            window in nanoseconds, <code>0</code> to disable parking
+	 */
+	public void setParkWindow(long parkWindow) {
+		if (parkWindow < 0) {
+			throw new IllegalArgumentException(
+					"parkWindow must not be negative");
+		}
+		this.parkWindow = parkWindow;
+	}
+
+	/**
+	 * Get the count of spin-offs from the EDT that completed without
+	 * dispatching of events, usually while parking.
+	 * 
+	 * @return count of parked spin-offs
+	 */
+	public long getParkedCount() {
+		return parked.get();
+	}
+
+	/**
+	 * Get the count of spin-offs from the EDT that dispatched events.
+	 * 
+	 * @return count of dispatched spin-offs
+	 */
+	public long getDispatchedCount() {
+		return dispatched.get();
+	}
+
+	/**
+	 * Get the timeout of the given invocation.
+	 * 
+	 * @param invocation
+	 *            the invocation
+	 * @return timeout in milliseconds
+	 */
+	private long getTimeout(Invocation invocation) {
+		Timeout timeout = (Timeout) invocation.getMetadata().getAnnotation(
+				Timeout.class);
+		if (timeout == null) {
+			return this.timeout;
+		}
+		return timeout.value();
+	}
+
+	/**
+	 * Get the timeout for spin-offs.
+	 * 
+	 * @return timeout in milliseconds, <code>0</code> for none
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Set the timeout for spin-offs of methods not annotated with
+	 * {@link Timeout}.
+	 * 
+	 * @param timeout
+	 *            timeout in milliseconds, <code>0</code> for none
+	 */
+	public void setTimeout(long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout must not be negative");
+		}
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Cancel all spin-offs in progress of invocations on the given object -
+	 * their threads are interrupted and a {@link CancellationException} is
+	 * thrown to the callers. <br>
+	 * The object may be a proxy or the object intercepted by it:
+	 * 
+	 * <pre>
+	 * Bean proxy = (Bean) Spin.off(new BeanImpl());
+	 * ...
+	 * evaluator.cancel(proxy);
+	 * </pre>
+	 * 
+	 * @param object
+	 *            proxy or intercepted object to cancel invocations on
+	 * @see Spin#getObject(Object)
+	 */
+	public void cancel(Object object) {
+		object = Spin.getObject(object);
+
+		Iterator iterator = evaluations.iterator();
+		while (iterator.hasNext()) {
+			Evaluation evaluation = (Evaluation) iterator.next();
+
+			if (evaluation.invocation.getObject() == object) {
+				evaluation.cancel(new CancellationException(
+						"spin-off cancelled"));
+			}
+		}
+	}
+
+	/**
+	 * Cancel all spin-offs in progress.
+	 * 
+	 * @see #cancel(Object)
+	 */
+	public void cancelAll() {
+		Iterator iterator = evaluations.iterator();
+		while (iterator.hasNext()) {
+			((Evaluation) iterator.next()).cancel(new CancellationException(
+					"spin-off cancelled"));
+		}
+	}
+
 	/**
 	 * Get the default dispatcher factory.
 	 * 
@@ -157,7 +467,8 @@ public class SpinOffEvaluator extends Evaluator {
 	}
 
 	/**
-	 * Set the default starter.
+	 * Set the default starter, e.g. an {@link ExecutorStarter} to reuse
+	 * threads.
 	 * 
 	 * @param starter
 	 *            the starter to use as default
@@ -165,4 +476,290 @@ public class SpinOffEvaluator extends Evaluator {
 	public static void setDefaultStarter(Starter starter) {
 		SpinOffEvaluator.defaultStarter = starter;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The spin-off of an invocation, which either completes or is cancelled.
+	 */
+	private static class Evaluation implements Prioritized, Targeted {
+
+		private final Invocation invocation;
+
+		private final int priority;
+
+		/**
+		 * Time of creation in nanoseconds.
+		 */
+		private final long created = System.nanoTime();
+
+		/**
+		 * The duration of the evaluation in nanoseconds - guarded by this
+		 * evaluation.
+		 */
+		private long duration;
+
+		/**
+		 * The dispatcher to stop when finished, <code>null</code> while the
+		 * EDT is parked - guarded by this evaluation.
+		 */
+		private Dispatcher dispatcher;
+
+		/**
+		 * The parked thread - guarded by this evaluation.
+		 */
+		private Thread parked;
+
+		/**
+		 * The thread evaluating the invocation - guarded by this evaluation.
+		 */
+		private Thread thread;
+
+		/**
+		 * Is this evaluation finished, either completed or cancelled - guarded
+		 * by this evaluation.
+		 */
+		private boolean stopped;
+
+		/**
+		 * The cause of cancellation - guarded by this evaluation.
+		 */
+		private Throwable cancellation;
+
+		/**
+		 * Create an evaluation.
+		 * 
+		 * @param invocation
+		 *            invocation to evaluate
+		 * @param priority
+		 *            priority of evaluation
+		 */
+		Evaluation(Invocation invocation, int priority) {
+			this.invocation = invocation;
+			this.priority = priority;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public Object getTarget() {
+			return invocation.getObject();
+		}
+
+		/**
+		 * Evaluate the invocation unless cancelled already.
+		 */
+		public void run() {
+			synchronized (this) {
+				if (stopped) {
+					return;
+				}
+				thread = Thread.currentThread();
+			}
+
+			try {
+				invocation.evaluate();
+			} finally {
+				boolean stop;
+				synchronized (this) {
+					thread = null;
+					stop = !stopped;
+					stopped = true;
+					duration = System.nanoTime() - created;
+				}
+
+				if (stop) {
+					wakeUp();
+				} else {
+					// clear interrupt of cancellation
+					Thread.interrupted();
+				}
+			}
+		}
+
+		/**
+		 * Park the calling thread until finished.
+		 * 
+		 * @param window
+		 *            maximum time to park in nanoseconds
+		 * @return <code>true</code> if finished
+		 */
+		boolean park(long window) {
+			synchronized (this) {
+				if (stopped || window <= 0) {
+					return stopped;
+				}
+				parked = Thread.currentThread();
+			}
+
+			long deadline = System.nanoTime() + window;
+			while (true) {
+				long remaining = deadline - System.nanoTime();
+				synchronized (this) {
+					if (stopped || remaining <= 0) {
+						parked = null;
+						return stopped;
+					}
+				}
+				LockSupport.parkNanos(this, remaining);
+			}
+		}
+
+		/**
+		 * Set the dispatcher to stop when finished.
+		 * 
+		 * @param dispatcher
+		 *            the dispatcher
+		 * @return <code>false</code> if already finished
+		 */
+		synchronized boolean setDispatcher(Dispatcher dispatcher) {
+			if (stopped) {
+				return false;
+			}
+			this.dispatcher = dispatcher;
+			return true;
+		}
+
+		/**
+		 * Cancel this evaluation if not finished yet.
+		 * 
+		 * @param cancellation
+		 *            cause to throw to the caller
+		 */
+		void cancel(Throwable cancellation) {
+			synchronized (this) {
+				if (stopped) {
+					return;
+				}
+				stopped = true;
+				this.cancellation = cancellation;
+				duration = System.nanoTime() - created;
+
+				if (thread != null) {
+					thread.interrupt();
+				}
+			}
+
+			wakeUp();
+		}
+
+		/**
+		 * Wake up the caller, either parked or dispatching events.
+		 */
+		private void wakeUp() {
+			Dispatcher dispatcher;
+			Thread parked;
+			synchronized (this) {
+				dispatcher = this.dispatcher;
+				parked = this.parked;
+			}
+
+			if (dispatcher != null) {
+				dispatcher.stop();
+			}
+			if (parked != null) {
+				LockSupport.unpark(parked);
+			}
+		}
+
+		/**
+		 * Get the duration of this evaluation.
+		 * 
+		 * @return duration in nanoseconds
+		 */
+		synchronized long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * Get the cause of cancellation.
+		 * 
+		 * @return cause or <code>null</code> if not cancelled
+		 */
+		synchronized Throwable getCancellation() {
+			return cancellation;
+		}
+	}
+
+	/**
+	 * The average duration of invocations of a method.
+	 */
+	private static class Duration {
+
+		/**
+		 * Exponentially weighted moving average in nanoseconds, negative if
+		 * not yet known.
+		 */
+		private volatile long average = -1;
+
+		/**
+		 * Update with the duration of an invocation.
+		 * 
+		 * @param duration
+		 *            duration in nanoseconds
+		 */
+		void update(long duration) {
+			long average = this.average;
+			if (average < 0) {
+				this.average = duration;
+			} else {
+				this.average = average + ((duration - average) >> 2);
+			}
+		}
+
+		/**
+		 * Get the window to park.
+		 * 
+		 * @param maximum
+		 *            maximum window in nanoseconds
+		 * @return window in nanoseconds
+		 */
+		long getWindow(long maximum) {
+			long average = this.average;
+			if (average < 0) {
+				return maximum;
+			} else if (average > maximum) {
+				return 0;
+			}
+			return Math.min(maximum, 2 * average);
+		}
+	}
+
+	/**
+	 * Holder of the scheduler of timeouts, created on first use.
+	 */
+	private static class Timeouts {
+
+		private static final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(
+				1, new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(SimpleStarter.threadGroup,
+								runnable, "Spin-Timeout");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		static {
+			scheduler.setRemoveOnCancelPolicy(true);
+		}
+
+		/**
+		 * Schedule the timeout of an evaluation.
+		 * 
+		 * @param evaluation
+		 *            evaluation to cancel on timeout
+		 * @param timeout
+		 *            timeout in milliseconds
+		 * @return the scheduled timeout
+		 */
+		static ScheduledFuture schedule(final Evaluation evaluation,
+				final long timeout) {
+			return scheduler.schedule(new Runnable() {
+				public void run() {
+					evaluation.cancel(new InvocationTimeoutException(
+							"spin-off timed out after " + timeout + "ms"));
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A <code>Starter</code> with a fixed count of serial lanes, each running its
+ * runnables in order on a single thread. <br>
+ * Objects are assigned to lanes by their identity, thus all runnables for one
+ * object started on its lane are confined to a single thread at a time, while
+ * runnables for different objects run in parallel across lanes. Idle lane
+ * threads are reaped after a minute. <br>
+ * Installed as the starter of a {@link SpinOffEvaluator}, spin-offs are
+ * confined to the lanes of their objects, since its runnables are
+ * {@link Targeted}.
+ * 
+ * @see ConfinedEvaluator
+ */
+public class StripedStarter implements Starter {
+
+	/**
+	 * The lane of the current thread.
+	 */
+	private static final ThreadLocal currentLane = new ThreadLocal();
+
+	private final Lane[] lanes;
+
+	/**
+	 * Create a starter with a lane for each available processor.
+	 */
+	public StripedStarter() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a starter.
+	 * 
+	 * @param count
+	 *            count of lanes
+	 */
+	public StripedStarter(int count) {
+		if (count <= 0) {
+			throw new IllegalArgumentException("count must be positive");
+		}
+
+		lanes = new Lane[count];
+		for (int l = 0; l < count; l++) {
+			lanes[l] = new Lane(l);
+		}
+	}
+
+	/**
+	 * Start a runnable on the lane of its target, if it is {@link Targeted}.
+	 * <br>
+	 * Any other runnable is started on the lane of the runnable itself, i.e.
+	 * it is <em>not</em> confined with other runnables for the same object -
+	 * use {@link #getLane(Object)} for these.
+	 * 
+	 * @param runnable
+	 *            runnable to start
+	 * @see #getLane(Object)
+	 */
+	public void start(Runnable runnable) {
+		Object target = runnable;
+		if (runnable instanceof Targeted) {
+			target = ((Targeted) runnable).getTarget();
+		}
+		getLane(target).start(runnable);
+	}
+
+	/**
+	 * Get the count of lanes.
+	 * 
+	 * @return count of lanes
+	 */
+	public int getLaneCount() {
+		return lanes.length;
+	}
+
+	/**
+	 * Get the index of the lane of the given object.
+	 * 
+	 * @param object
+	 *            object to get index for
+	 * @return index of lane
+	 */
+	public int indexOf(Object object) {
+		int hash = System.identityHashCode(object);
+		hash ^= (hash >>> 16);
+
+		return (hash & 0x7fffffff) % lanes.length;
+	}
+
+	/**
+	 * Get the lane with the given index.
+	 * 
+	 * @param index
+	 *            index of lane
+	 * @return starter of runnables on the lane
+	 */
+	public Starter getLane(int index) {
+		return lanes[index];
+	}
+
+	/**
+	 * Get the lane of the given object.
+	 * 
+	 * @param object
+	 *            object to get lane for
+	 * @return starter of runnables on the lane
+	 */
+	public Starter getLane(Object object) {
+		return lanes[indexOf(object)];
+	}
+
+	/**
+	 * Is the current thread the thread of the lane with the given index.
+	 * 
+	 * @param index
+	 *            index of lane
+	 * @return <code>true</code> if running on the lane
+	 */
+	public boolean isCurrentLane(int index) {
+		return currentLane.get() == lanes[index];
+	}
+
+	/**
+	 * Shut down all lanes - already started runnables are completed, further
+	 * ones are rejected.
+	 */
+	public void shutdown() {
+		for (int l = 0; l < lanes.length; l++) {
+			lanes[l].executor.shutdown();
+		}
+	}
+
+	/**
+	 * A serial lane.
+	 */
+	private static class Lane implements Starter {
+
+		private final ThreadPoolExecutor executor;
+
+		/**
+		 * Create a lane.
+		 * 
+		 * @param index
+		 *            index of this lane
+		 */
+		Lane(final int index) {
+			executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue(), new ThreadFactory() {
+						public Thread newThread(final Runnable runnable) {
+							Thread thread = new Thread(
+									SimpleStarter.threadGroup, new Runnable() {
+										public void run() {
+											currentLane.set(Lane.this);
+
+											runnable.run();
+										}
+									}, "Spin-Lane-" + index);
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		public void start(Runnable runnable) {
+			executor.execute(runnable);
+		}
+	}
+}
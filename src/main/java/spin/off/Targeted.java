@@ -0,0 +1,36 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+/**
+ * A <code>Runnable</code> working on a target object, started on the lane of
+ * its target by a {@link StripedStarter}. <br>
+ * Since a lane runs a single runnable at a time, a targeted runnable must never
+ * block waiting for another runnable of the same target - the latter would be
+ * started on the same lane and never run.
+ */
+public interface Targeted extends Runnable {
+
+	/**
+	 * Get the target of this runnable.
+	 * 
+	 * @return target object
+	 */
+	public Object getTarget();
+}
@@ -0,0 +1,164 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A <code>Starter</code> running each runnable on a new virtual thread, so
+ * blocking spin-offs do not tie up platform threads. <br>
+ * Virtual threads are detected at runtime - on a JRE without them all
+ * runnables are passed to a fallback starter instead.
+ * <p>
+ * A virtual thread blocking while holding a monitor pins its carrier thread.
+ * Call {@link #enablePinningDiagnostics(boolean)} early to have the JRE print
+ * a stack trace of each such occurrence.
+ * </p>
+ * 
+ * @see #isAvailable()
+ * @see SpinOffEvaluator#setDefaultStarter(Starter)
+ */
+public class VirtualStarter implements Starter {
+
+	/**
+	 * System property enabling pinning diagnostics of virtual threads.
+	 */
+	private static final String TRACE_PINNED_THREADS = "jdk.tracePinnedThreads";
+
+	private static final Method ofVirtual;
+
+	private static final Method name;
+
+	private static final Method factory;
+
+	static {
+		Method ofVirtualMethod = null;
+		Method nameMethod = null;
+		Method factoryMethod = null;
+		try {
+			Class builder = Class.forName("java.lang.Thread$Builder");
+
+			ofVirtualMethod = Thread.class.getMethod("ofVirtual", new Class[0]);
+			nameMethod = builder.getMethod("name", new Class[] {
+					String.class, Long.TYPE });
+			factoryMethod = builder.getMethod("factory", new Class[0]);
+
+			// fails if virtual threads are a disabled preview feature
+			ofVirtualMethod.invoke(null, new Object[0]);
+		} catch (Exception notAvailable) {
+			ofVirtualMethod = null;
+		}
+		ofVirtual = ofVirtualMethod;
+		name = nameMethod;
+		factory = factoryMethod;
+	}
+
+	/**
+	 * Factory of virtual threads, <code>null</code> if not available.
+	 */
+	private final ThreadFactory threads;
+
+	private final Starter fallback;
+
+	/**
+	 * Create a starter falling back to a {@link SimpleStarter}.
+	 */
+	public VirtualStarter() {
+		this(new SimpleStarter());
+	}
+
+	/**
+	 * Create a starter.
+	 * 
+	 * @param fallback
+	 *            starter to use if virtual threads are not available
+	 */
+	public VirtualStarter(Starter fallback) {
+		if (fallback == null) {
+			throw new IllegalArgumentException("fallback must not be null");
+		}
+		this.fallback = fallback;
+
+		threads = createFactory();
+	}
+
+	/**
+	 * Start a runnable on a new virtual thread.
+	 * 
+	 * @param runnable
+	 *            runnable to start
+	 */
+	public void start(Runnable runnable) {
+		if (threads == null) {
+			fallback.start(runnable);
+		} else {
+			threads.newThread(runnable).start();
+		}
+	}
+
+	/**
+	 * Are virtual threads available in the running JRE.
+	 * 
+	 * @return <code>true</code> if available
+	 */
+	public static boolean isAvailable() {
+		return ofVirtual != null;
+	}
+
+	/**
+	 * Enable the JRE's diagnostics of virtual threads blocking while pinned to
+	 * their carrier, e.g. by holding a monitor across blocking I/O. <br>
+	 * Has to be called before the first virtual thread is started in this JVM
+	 * and has no effect if <code>jdk.tracePinnedThreads</code> is already set
+	 * or the JRE does not pin on monitors anymore.
+	 * 
+	 * @param full
+	 *            <code>true</code> to print full stack traces, otherwise
+	 *            only frames holding monitors are printed
+	 */
+	public static void enablePinningDiagnostics(boolean full) {
+		if (System.getProperty(TRACE_PINNED_THREADS) == null) {
+			System.setProperty(TRACE_PINNED_THREADS, full ? "full" : "short");
+		}
+	}
+
+	/**
+	 * Create a factory of virtual threads.
+	 * 
+	 * @return factory or <code>null</code> if not available
+	 */
+	private static ThreadFactory createFactory() {
+		if (!isAvailable()) {
+			return null;
+		}
+
+		try {
+			Object builder = ofVirtual.invoke(null, new Object[0]);
+			builder = name.invoke(builder, new Object[] { "Spin-Virtual-",
+					Long.valueOf(0) });
+			return (ThreadFactory) factory.invoke(builder, new Object[0]);
+		} catch (IllegalAccessException ex) {
+			throw new Error(ex);
+		} catch (InvocationTargetException ex) {
+			throw new Error(ex.getTargetException());
+		}
+	}
+}
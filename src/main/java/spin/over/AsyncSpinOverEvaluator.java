@@ -0,0 +1,145 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.Futures;
+import spin.Implementations;
+import spin.Invocation;
+import spin.Spin;
+
+/**
+ * An evaluator for asynchronous spin-over without waiting for the EDT.
+ * <p>
+ * Invocations of methods returning a {@link CompletableFuture},
+ * {@link CompletionStage} or {@link Future} return a future immediately, while
+ * the object's method with equal name and parameter types is evaluated on the
+ * EDT. The future is completed on the EDT with the method's result or
+ * throwable - if the method itself returns a <code>CompletionStage</code>,
+ * with the result of the latter as soon as it completes.
+ * </p>
+ * <p>
+ * Thus a background thread can issue many reads of a Swing component without
+ * waiting for each:
+ * 
+ * <pre>
+ * AsyncTable table = (AsyncTable) Spin.overAsync(jtable, AsyncTable.class);
+ * CompletableFuture rows = table.getRowCount();
+ * CompletableFuture columns = table.getColumnCount();
+ * </pre>
+ * 
+ * Note that dependent stages registered before completion are evaluated on
+ * the EDT, unless registered with an asynchronous method. All other
+ * invocations are passed to a synchronous evaluator.
+ * </p>
+ * 
+ * @see Implementations
+ * @see Futures
+ * @see spin.proxy.JDKProxyFactory#createProxy(Object, Class, Evaluator)
+ */
+public class AsyncSpinOverEvaluator extends Evaluator {
+
+	/**
+	 * The evaluator of synchronous invocations, <code>null</code> for the
+	 * default.
+	 */
+	private Evaluator evaluator;
+
+	/**
+	 * Create an evaluator using the default spin-over evaluator for
+	 * synchronous invocations.
+	 * 
+	 * @see Spin#setDefaultOverEvaluator(Evaluator)
+	 */
+	public AsyncSpinOverEvaluator() {
+		this(null);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            evaluator of synchronous invocations, <code>null</code> for
+	 *            the default
+	 */
+	public AsyncSpinOverEvaluator(Evaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Spin the given invocation over asynchronously if its method returns a
+	 * future.
+	 * 
+	 * @param invocation
+	 *            invocation to spin-over
+	 */
+	public void evaluate(Invocation invocation) throws Throwable {
+		Method method = invocation.getMethod();
+
+		Method implementation = Implementations.get(invocation.getObject()
+				.getClass(), method);
+		if (implementation != method) {
+			invocation.setMethod(implementation);
+		}
+
+		if (Futures.isAsync(method)) {
+			invocation.setResult(schedule(invocation.copy()));
+		} else {
+			Evaluator evaluator = this.evaluator;
+			if (evaluator == null) {
+				evaluator = Spin.getDefaultOverEvaluator();
+			}
+			evaluator.evaluate(invocation);
+		}
+	}
+
+	/**
+	 * Schedule the evaluation of the given invocation on the EDT.
+	 * 
+	 * @param invocation
+	 *            invocation to evaluate
+	 * @return future of the result
+	 */
+	private CompletableFuture schedule(final Invocation invocation) {
+		final CompletableFuture future = new CompletableFuture();
+
+		Runnable runnable = new Runnable() {
+			public void run() {
+				invocation.evaluate();
+
+				Futures.complete(future, invocation);
+			}
+		};
+
+		if (SwingUtilities.isEventDispatchThread()) {
+			runnable.run();
+		} else {
+			SwingUtilities.invokeLater(runnable);
+		}
+
+		return future;
+	}
+}
@@ -0,0 +1,390 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.Invocation;
+
+/**
+ * An evaluator for spin-over, that batches invocations into a single event on
+ * the EDT. <br>
+ * Invocations are collected in a lock-free queue and a single drain event is
+ * posted whenever the queue goes from empty to non-empty. The drain evaluates
+ * all queued invocations in order, so a burst of invocations costs one hop to
+ * the EDT only. <br>
+ * Invocations of <code>void</code> methods return immediately, throwables of
+ * these are passed to an {@link Thread.UncaughtExceptionHandler}. Invocations
+ * of all other methods are queued too but wait for their evaluation. <br>
+ * Invocations on the EDT are evaluated immediately.
+ * <p>
+ * With a budget set by {@link #setBudget(long)} each drain is limited to a
+ * slice of time: when the budget is spent, the drain yields to the
+ * {@link java.awt.EventQueue} by posting another drain event, so pending input
+ * and paint events are dispatched before the remaining invocations.
+ * </p>
+ * 
+ * <pre>
+ * Spin.setDefaultOverEvaluator(new BatchingSpinOverEvaluator());
+ * </pre>
+ * 
+ * @see spin.MethodMetadata#isVoid()
+ */
+public class BatchingSpinOverEvaluator extends Evaluator {
+
+	/**
+	 * The queued invocations and waiters, consumed on the EDT only.
+	 */
+	private final MpscQueue queue = new MpscQueue();
+
+	/**
+	 * Is a drain event posted.
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	private final Runnable drainer = new Runnable() {
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * The handler of throwables, <code>null</code> for the handler of the EDT.
+	 */
+	private Thread.UncaughtExceptionHandler handler;
+
+	/**
+	 * The time budget of a drain in nanoseconds, <code>0</code> for unlimited.
+	 */
+	private volatile long budget;
+
+	/**
+	 * The count of queued elements.
+	 */
+	private final AtomicInteger backlog = new AtomicInteger();
+
+	private final AtomicLong drainCount = new AtomicLong();
+
+	private final AtomicLong yieldCount = new AtomicLong();
+
+	private final AtomicLong overrunCount = new AtomicLong();
+
+	private final AtomicLong overrunTime = new AtomicLong();
+
+	/**
+	 * Create an evaluator passing throwables to the handler of the EDT.
+	 */
+	public BatchingSpinOverEvaluator() {
+		this(null);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param handler
+	 *            handler of throwables of <code>void</code> methods,
+	 *            <code>null</code> for the handler of the EDT
+	 */
+	public BatchingSpinOverEvaluator(Thread.UncaughtExceptionHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Spin the given invocation on the EDT.
+	 * 
+	 * @param invocation
+	 *            invocation to spin-over
+	 */
+	public void evaluate(Invocation invocation) throws Throwable {
+		if (SwingUtilities.isEventDispatchThread()) {
+			invocation.evaluate();
+		} else if (invocation.getMetadata().isVoid()) {
+			post(invocation.copy());
+		} else {
+			Waiter waiter = new Waiter(invocation);
+
+			enqueue(waiter);
+
+			waiter.await();
+		}
+	}
+
+	/**
+	 * Post the given invocation of a <code>void</code> method for evaluation
+	 * on the EDT. <br>
+	 * This default implementation enqueues the invocation.
+	 * 
+	 * @param invocation
+	 *            copy of the invocation, not yet evaluated
+	 */
+	protected void post(Invocation invocation) {
+		enqueue(invocation);
+	}
+
+	/**
+	 * Hook method called on the EDT, whenever an invocation taken from the
+	 * queue was evaluated.
+	 * 
+	 * @param backlog
+	 *            the remaining backlog
+	 */
+	protected void dequeued(int backlog) {
+	}
+
+	/**
+	 * Enqueue the given element, posting a drain event if none is posted yet.
+	 * 
+	 * @param element
+	 *            invocation or waiter
+	 */
+	private void enqueue(Object element) {
+		backlog.incrementAndGet();
+		queue.offer(element);
+
+		if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(drainer);
+		}
+	}
+
+	/**
+	 * Drain the queue - called on the EDT only. <br>
+	 * If the drain fails, e.g. because the handler of throwables throws, the
+	 * drain is resumed by another event.
+	 */
+	private void drain() {
+		boolean drained = false;
+		try {
+			drainSlice();
+
+			drained = true;
+		} finally {
+			if (!drained) {
+				// still scheduled
+				SwingUtilities.invokeLater(drainer);
+			}
+		}
+	}
+
+	/**
+	 * Drain the queue within the budget.
+	 */
+	private void drainSlice() {
+		drainCount.incrementAndGet();
+
+		long budget = this.budget;
+		long start = System.nanoTime();
+		long last = start;
+
+		while (true) {
+			Object element;
+			while ((element = queue.poll()) != null) {
+				int backlog = this.backlog.decrementAndGet();
+				try {
+					if (element instanceof Waiter) {
+						((Waiter) element).evaluate();
+					} else {
+						Invocation invocation = (Invocation) element;
+
+						invocation.evaluate();
+						if (invocation.getThrowable() != null) {
+							onThrowable(invocation);
+						}
+					}
+				} finally {
+					dequeued(backlog);
+				}
+
+				if (budget > 0) {
+					long now = System.nanoTime();
+					long duration = now - last;
+					last = now;
+					if (duration > budget) {
+						overrunCount.incrementAndGet();
+						overrunTime.addAndGet(duration - budget);
+					}
+
+					if (now - start >= budget) {
+						// resume behind pending events, still scheduled
+						yieldCount.incrementAndGet();
+						SwingUtilities.invokeLater(drainer);
+						return;
+					}
+				}
+			}
+
+			scheduled.set(false);
+
+			// an element might have been offered before the flag was cleared
+			if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Handle the throwable of a queued invocation.
+	 * 
+	 * @param invocation
+	 *            the invocation
+	 */
+	private void onThrowable(Invocation invocation) {
+		Thread thread = Thread.currentThread();
+
+		Thread.UncaughtExceptionHandler handler = this.handler;
+		if (handler == null) {
+			handler = thread.getUncaughtExceptionHandler();
+		}
+		handler.uncaughtException(thread, invocation.getThrowable());
+	}
+
+	/**
+	 * Set the time budget of each drain, e.g. <code>4000000</code> for 4
+	 * milliseconds. <br>
+	 * The budget is checked after each invocation, thus a single long-running
+	 * invocation can still exceed it.
+	 * 
+	 * @param budget
+	 *            budget in nanoseconds, <code>0</code> for unlimited
+	 */
+	public void setBudget(long budget) {
+		if (budget < 0) {
+			throw new IllegalArgumentException("budget must not be negative");
+		}
+		this.budget = budget;
+	}
+
+	/**
+	 * Get the time budget of each drain.
+	 * 
+	 * @return budget in nanoseconds, <code>0</code> for unlimited
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Get the count of queued invocations not yet evaluated.
+	 * 
+	 * @return size of backlog
+	 */
+	public int getBacklog() {
+		return backlog.get();
+	}
+
+	/**
+	 * Get the count of drain events evaluated so far, i.e. the count of
+	 * slices.
+	 * 
+	 * @return count of drains
+	 */
+	public long getDrainCount() {
+		return drainCount.get();
+	}
+
+	/**
+	 * Get the count of drains that yielded to the event queue because their
+	 * budget was spent.
+	 * 
+	 * @return count of yields
+	 */
+	public long getYieldCount() {
+		return yieldCount.get();
+	}
+
+	/**
+	 * Get the count of invocations that alone took longer than the budget,
+	 * thus could not be interrupted by a yield.
+	 * 
+	 * @return count of overruns
+	 */
+	public long getOverrunCount() {
+		return overrunCount.get();
+	}
+
+	/**
+	 * Get the total time invocations took longer than the budget.
+	 * 
+	 * @return overrun time in nanoseconds
+	 * @see #getOverrunCount()
+	 */
+	public long getOverrunTime() {
+		return overrunTime.get();
+	}
+
+	/**
+	 * A queued invocation, that is waited for.
+	 */
+	private static class Waiter {
+
+		private final Invocation invocation;
+
+		/**
+		 * Is the invocation evaluated - guarded by this waiter.
+		 */
+		private boolean done;
+
+		/**
+		 * Create a waiter.
+		 * 
+		 * @param invocation
+		 *            the invocation
+		 */
+		Waiter(Invocation invocation) {
+			this.invocation = invocation;
+		}
+
+		/**
+		 * Evaluate the invocation and notify the waiting thread.
+		 */
+		void evaluate() {
+			try {
+				invocation.evaluate();
+			} finally {
+				synchronized (this) {
+					done = true;
+					notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Wait for the evaluation of the invocation, deferring interrupts
+		 * until done.
+		 */
+		synchronized void await() {
+			boolean interrupted = false;
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				}
+			}
+
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
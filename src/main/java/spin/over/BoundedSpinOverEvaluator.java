@@ -0,0 +1,245 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import spin.Invocation;
+
+/**
+ * A batching evaluator for spin-over, that applies backpressure to producers
+ * when the EDT falls behind. <br>
+ * When the backlog of queued invocations reaches the high-water mark,
+ * invocations of <code>void</code> methods are throttled until the EDT has
+ * drained the backlog down to the low-water mark. Throttled producers either
+ * block, spin or get a {@link RejectedExecutionException}, depending on the
+ * policy.
+ * 
+ * <pre>
+ * Spin.setDefaultOverEvaluator(new BoundedSpinOverEvaluator(1024, 256,
+ * 		BoundedSpinOverEvaluator.BLOCK));
+ * </pre>
+ * 
+ * Invocations on the EDT are never throttled.
+ * 
+ * @see #getBacklog()
+ */
+public class BoundedSpinOverEvaluator extends BatchingSpinOverEvaluator {
+
+	/**
+	 * Policy to block throttled producers.
+	 */
+	public static final int BLOCK = 0;
+
+	/**
+	 * Policy to let throttled producers spin, for short stalls only.
+	 */
+	public static final int SPIN = 1;
+
+	/**
+	 * Policy to reject invocations of throttled producers.
+	 */
+	public static final int REJECT = 2;
+
+	private final int highWaterMark;
+
+	private final int lowWaterMark;
+
+	private final int policy;
+
+	/**
+	 * Are producers throttled, i.e. the high-water mark was reached and the
+	 * low-water mark not yet.
+	 */
+	private volatile boolean throttled;
+
+	/**
+	 * The lock blocked producers wait on.
+	 */
+	private final Object lock = new Object();
+
+	private final AtomicLong blockedCount = new AtomicLong();
+
+	private final AtomicLong blockedTime = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	/**
+	 * Create an evaluator blocking throttled producers.
+	 * 
+	 * @param highWaterMark
+	 *            backlog to start throttling at
+	 * @param lowWaterMark
+	 *            backlog to stop throttling at
+	 */
+	public BoundedSpinOverEvaluator(int highWaterMark, int lowWaterMark) {
+		this(highWaterMark, lowWaterMark, BLOCK, null);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param highWaterMark
+	 *            backlog to start throttling at
+	 * @param lowWaterMark
+	 *            backlog to stop throttling at
+	 * @param policy
+	 *            policy for throttled producers, {@link #BLOCK},
+	 *            {@link #SPIN} or {@link #REJECT}
+	 * @param handler
+	 *            handler of throwables of <code>void</code> methods,
+	 *            <code>null</code> for the handler of the EDT
+	 */
+	public BoundedSpinOverEvaluator(int highWaterMark, int lowWaterMark,
+			int policy, Thread.UncaughtExceptionHandler handler) {
+		super(handler);
+
+		if (highWaterMark < 1) {
+			throw new IllegalArgumentException(
+					"highWaterMark must be positive");
+		}
+		if (lowWaterMark < 0 || lowWaterMark >= highWaterMark) {
+			throw new IllegalArgumentException(
+					"lowWaterMark must be between 0 and highWaterMark");
+		}
+		if (policy != BLOCK && policy != SPIN && policy != REJECT) {
+			throw new IllegalArgumentException("unknown policy " + policy);
+		}
+
+		this.highWaterMark = highWaterMark;
+		this.lowWaterMark = lowWaterMark;
+		this.policy = policy;
+	}
+
+	/**
+	 * Overriden to throttle producers.
+	 */
+	protected void post(Invocation invocation) {
+		if (throttled || getBacklog() >= highWaterMark) {
+			throttle();
+		}
+
+		super.post(invocation);
+	}
+
+	/**
+	 * Throttle the current producer according to the policy.
+	 */
+	private void throttle() {
+		throttled = true;
+
+		// the EDT might have drained before the flag was set
+		if (getBacklog() <= lowWaterMark) {
+			release();
+			return;
+		}
+
+		if (policy == REJECT) {
+			rejectedCount.incrementAndGet();
+			throw new RejectedExecutionException("backlog reached "
+					+ highWaterMark);
+		}
+
+		blockedCount.incrementAndGet();
+		long start = System.nanoTime();
+		try {
+			if (policy == SPIN) {
+				while (throttled) {
+					Thread.yield();
+				}
+			} else {
+				boolean interrupted = false;
+				synchronized (lock) {
+					while (throttled) {
+						try {
+							lock.wait();
+						} catch (InterruptedException ex) {
+							interrupted = true;
+						}
+					}
+				}
+
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		} finally {
+			blockedTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Overriden to release producers at the low-water mark.
+	 */
+	protected void dequeued(int backlog) {
+		if (throttled && backlog <= lowWaterMark) {
+			release();
+		}
+	}
+
+	/**
+	 * Stop throttling and release all blocked producers.
+	 */
+	private void release() {
+		throttled = false;
+
+		if (policy == BLOCK) {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Are producers currently throttled.
+	 * 
+	 * @return <code>true</code> if throttled
+	 */
+	public boolean isThrottled() {
+		return throttled;
+	}
+
+	/**
+	 * Get the count of producers blocked or spinning so far.
+	 * 
+	 * @return count of blocked producers
+	 */
+	public long getBlockedCount() {
+		return blockedCount.get();
+	}
+
+	/**
+	 * Get the total time producers were blocked or spinning.
+	 * 
+	 * @return blocked time in nanoseconds
+	 */
+	public long getBlockedTime() {
+		return blockedTime.get();
+	}
+
+	/**
+	 * Get the count of invocations rejected so far.
+	 * 
+	 * @return count of rejections
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+}
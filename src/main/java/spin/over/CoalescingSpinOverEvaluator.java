@@ -0,0 +1,223 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import spin.Invocation;
+
+/**
+ * A batching evaluator for spin-over, where the latest invocation wins. <br>
+ * A pending invocation of a <code>void</code> method is replaced in place by
+ * a newer invocation of the same method on the same object, before the EDT
+ * drains it. Annotate a method with {@link CoalesceBy} to refine the key by
+ * selected arguments.
+ * 
+ * <pre>
+ * Spin.setDefaultOverEvaluator(new CoalescingSpinOverEvaluator());
+ * </pre>
+ * 
+ * Note that only the latest invocation of each key is evaluated, thus this
+ * evaluator is suited for setters of state only, e.g. of a progress bar.
+ */
+public class CoalescingSpinOverEvaluator extends BatchingSpinOverEvaluator {
+
+	/**
+	 * The pending slots keyed by their invocations.
+	 */
+	private final ConcurrentMap slots = new ConcurrentHashMap();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * Create an evaluator passing throwables to the handler of the EDT.
+	 */
+	public CoalescingSpinOverEvaluator() {
+		this(null);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param handler
+	 *            handler of throwables of <code>void</code> methods,
+	 *            <code>null</code> for the handler of the EDT
+	 */
+	public CoalescingSpinOverEvaluator(Thread.UncaughtExceptionHandler handler) {
+		super(handler);
+	}
+
+	/**
+	 * Overriden to replace a pending invocation with the same key.
+	 */
+	protected void post(Invocation invocation) {
+		Key key = new Key(invocation);
+		while (true) {
+			Slot slot = (Slot) slots.get(key);
+			if (slot != null && slot.replace(invocation)) {
+				droppedCount.incrementAndGet();
+				return;
+			}
+
+			Slot fresh = new Slot(key, invocation);
+			if (slot == null ? slots.putIfAbsent(key, fresh) == null : slots
+					.replace(key, slot, fresh)) {
+				super.post(fresh);
+				return;
+			}
+			// slot was taken or added concurrently
+		}
+	}
+
+	/**
+	 * Get the count of invocations replaced before their evaluation.
+	 * 
+	 * @return count of dropped invocations
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Key of an invocation, identifying its object by identity, its method by
+	 * equality and refined by selected arguments.
+	 */
+	private static class Key {
+
+		private final Object object;
+
+		private final Method method;
+
+		private final Object[] args;
+
+		private final int hash;
+
+		/**
+		 * Create a key.
+		 * 
+		 * @param invocation
+		 *            the invocation
+		 */
+		Key(Invocation invocation) {
+			this.object = invocation.getObject();
+			this.method = invocation.getMethod();
+
+			CoalesceBy by = (CoalesceBy) invocation.getMetadata()
+					.getAnnotation(CoalesceBy.class);
+			if (by == null) {
+				this.args = null;
+			} else {
+				int[] indices = by.value();
+				Object[] arguments = invocation.getArguments();
+
+				this.args = new Object[indices.length];
+				for (int i = 0; i < indices.length; i++) {
+					this.args[i] = arguments[indices[i]];
+				}
+			}
+
+			int hash = System.identityHashCode(object);
+			hash = 31 * hash + method.hashCode();
+			hash = 31 * hash + Arrays.hashCode(args);
+			this.hash = hash;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+
+			return hash == key.hash && object == key.object
+					&& method.equals(key.method)
+					&& Arrays.equals(args, key.args);
+		}
+	}
+
+	/**
+	 * A queued placeholder, evaluating the latest invocation of its key.
+	 */
+	private class Slot extends Invocation {
+
+		private final Key key;
+
+		/**
+		 * The latest invocation, <code>null</code> when taken.
+		 */
+		private final AtomicReference latest;
+
+		/**
+		 * Create a slot.
+		 * 
+		 * @param key
+		 *            key of the invocation
+		 * @param invocation
+		 *            the first invocation
+		 */
+		Slot(Key key, Invocation invocation) {
+			super(invocation.getObject(), invocation.getMetadata(), invocation
+					.getArguments());
+
+			this.key = key;
+			this.latest = new AtomicReference(invocation);
+		}
+
+		/**
+		 * Replace the latest invocation.
+		 * 
+		 * @param invocation
+		 *            the newer invocation
+		 * @return <code>false</code> if this slot was already taken
+		 */
+		boolean replace(Invocation invocation) {
+			while (true) {
+				Object current = latest.get();
+				if (current == null) {
+					return false;
+				}
+				if (latest.compareAndSet(current, invocation)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Overriden to take and evaluate the latest invocation.
+		 */
+		protected Object invoke() throws Throwable {
+			slots.remove(key, this);
+
+			Invocation invocation = (Invocation) latest.getAndSet(null);
+			invocation.evaluate();
+			return invocation.resultOrThrow();
+		}
+	}
+}
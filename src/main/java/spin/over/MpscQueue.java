@@ -0,0 +1,123 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free unbounded queue for multiple producers and a single consumer.
+ * <br>
+ * Producers swap themselves into the tail with a single atomic operation, the
+ * consumer follows the links from the head without any atomic operation at all.
+ * Only the consumer may call {@link #poll()} and {@link #isEmpty()}.
+ */
+class MpscQueue {
+
+	private static final AtomicReferenceFieldUpdater next = AtomicReferenceFieldUpdater
+			.newUpdater(Node.class, Node.class, "next");
+
+	/**
+	 * The last node - shared by all producers.
+	 */
+	private final AtomicReference tail;
+
+	/**
+	 * The node preceding the first element - owned by the consumer.
+	 */
+	private Node head;
+
+	/**
+	 * Create an empty queue.
+	 */
+	MpscQueue() {
+		head = new Node(null);
+		tail = new AtomicReference(head);
+	}
+
+	/**
+	 * Offer an element - may be called by any thread.
+	 * 
+	 * @param element
+	 *            the element to offer
+	 */
+	void offer(Object element) {
+		Node node = new Node(element);
+
+		Node previous = (Node) tail.getAndSet(node);
+
+		next.lazySet(previous, node);
+	}
+
+	/**
+	 * Poll the first element - may be called by the consumer only.
+	 * 
+	 * @return the first element or <code>null</code> if this queue is empty
+	 */
+	Object poll() {
+		Node first = head.next;
+		if (first == null) {
+			if (tail.get() == head) {
+				return null;
+			}
+
+			// a producer has swapped the tail but not yet linked its node
+			do {
+				Thread.yield();
+
+				first = head.next;
+			} while (first == null);
+		}
+
+		Object element = first.element;
+		first.element = null;
+		head = first;
+
+		return element;
+	}
+
+	/**
+	 * Is this queue empty - may be called by the consumer only.
+	 * 
+	 * @return <code>true</code> if empty
+	 */
+	boolean isEmpty() {
+		return tail.get() == head;
+	}
+
+	/**
+	 * A node of the queue.
+	 */
+	private static class Node {
+
+		private Object element;
+
+		volatile Node next;
+
+		/**
+		 * Create a node.
+		 * 
+		 * @param element
+		 *            the element
+		 */
+		Node(Object element) {
+			this.element = element;
+		}
+	}
+}
@@ -70,7 +70,7 @@ public class SpinOverEvaluator extends Evaluator {
 			if (wait) {
 				SwingUtilities.invokeAndWait(runnable);
 			} else {
-				if (invocation.getMethod().getReturnType() != Void.TYPE) {
+				if (!invocation.getMetadata().isVoid()) {
 					onInvokeLaterNonVoidReturnType(invocation);
 				}
 				SwingUtilities.invokeLater(runnable);
@@ -84,6 +84,7 @@ public class SpinOverEvaluator extends Evaluator {
 	 * @param invocation
 	 *            the invocation
 	 * @throws IllegalArgumentException
+	 * @see AsyncSpinOverEvaluator
 	 */
 	protected void onInvokeLaterNonVoidReturnType(Invocation invocation) {
 		throw new RuntimeException("invokeLater with non-void return type");
@@ -0,0 +1,281 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import spin.Evaluator;
+import spin.Invocation;
+
+/**
+ * An evaluator caching the results of methods annotated with {@link Cached}.
+ * <br>
+ * On a cache hit the result is returned on the calling thread, without
+ * passing the invocation to the wrapped evaluator, i.e. without starting a
+ * thread or dispatching events. Results are keyed by the identity of the
+ * object and the method and arguments of invocations - the cache holds
+ * objects strongly until their results are evicted or invalidated. Throwables
+ * are never cached.
+ * <p>
+ * The cache is bounded, evicting the least recently used result if full.
+ * Expired results are evicted on access.
+ * </p>
+ * 
+ * <pre>
+ * Spin.setDefaultOffEvaluator(new CachingEvaluator(new SpinOffEvaluator(), 1000));
+ * </pre>
+ */
+public class CachingEvaluator extends Evaluator {
+
+	private Evaluator evaluator;
+
+	private final int capacity;
+
+	/**
+	 * The cached results in access order - guarded by itself.
+	 */
+	private final LinkedHashMap results;
+
+	/**
+	 * The generation of results, incremented on each invalidation - guarded by
+	 * the results.
+	 */
+	private long generation;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            the evaluator of invocations
+	 * @param capacity
+	 *            maximum count of cached results
+	 */
+	public CachingEvaluator(Evaluator evaluator, int capacity) {
+		if (evaluator == null) {
+			throw new IllegalArgumentException("evaluator must not be null");
+		}
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.evaluator = evaluator;
+		this.capacity = capacity;
+
+		results = new LinkedHashMap(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry eldest) {
+				if (size() > CachingEvaluator.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public void evaluate(Invocation invocation) throws Throwable {
+		Cached cached = (Cached) invocation.getMetadata().getAnnotation(
+				Cached.class);
+		if (cached == null) {
+			evaluator.evaluate(invocation);
+			return;
+		}
+
+		Object[] args = invocation.getArguments();
+		if (args != null) {
+			args = (Object[]) args.clone();
+		}
+		InvocationKey key = new InvocationKey(invocation.getObject(),
+				invocation.getMethod(), args);
+
+		long generation;
+		synchronized (results) {
+			generation = this.generation;
+
+			Result result = (Result) results.get(key);
+			if (result != null) {
+				if (result.isExpired(System.nanoTime())) {
+					results.remove(key);
+					evictions++;
+				} else {
+					hits++;
+					invocation.setResult(result.value);
+					return;
+				}
+			}
+			misses++;
+		}
+
+		evaluator.evaluate(invocation);
+
+		if (invocation.getThrowable() == null) {
+			long expiration = 0;
+			if (cached.ttl() > 0) {
+				expiration = System.nanoTime() + cached.ttl() * 1000000;
+			}
+
+			synchronized (results) {
+				// don't cache a result invalidated while evaluating
+				if (generation == this.generation) {
+					results.put(key, new Result(invocation.getResult(),
+							expiration));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Invalidate all cached results of the given object.
+	 * 
+	 * @param object
+	 *            object to invalidate results of
+	 */
+	public void invalidate(Object object) {
+		synchronized (results) {
+			generation++;
+
+			Iterator keys = results.keySet().iterator();
+			while (keys.hasNext()) {
+				if (((InvocationKey) keys.next()).getObject() == object) {
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Invalidate all cached results of the given method.
+	 * 
+	 * @param method
+	 *            method to invalidate results of
+	 */
+	public void invalidate(Method method) {
+		synchronized (results) {
+			generation++;
+
+			Iterator keys = results.keySet().iterator();
+			while (keys.hasNext()) {
+				if (((InvocationKey) keys.next()).getMethod().equals(method)) {
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Invalidate all cached results.
+	 */
+	public void invalidateAll() {
+		synchronized (results) {
+			generation++;
+
+			results.clear();
+		}
+	}
+
+	/**
+	 * Get the count of cached results.
+	 * 
+	 * @return count of results
+	 */
+	public int getSize() {
+		synchronized (results) {
+			return results.size();
+		}
+	}
+
+	/**
+	 * Get the count of invocations answered from the cache.
+	 * 
+	 * @return count of hits
+	 */
+	public long getHitCount() {
+		synchronized (results) {
+			return hits;
+		}
+	}
+
+	/**
+	 * Get the count of invocations of cached methods passed to the wrapped
+	 * evaluator.
+	 * 
+	 * @return count of misses
+	 */
+	public long getMissCount() {
+		synchronized (results) {
+			return misses;
+		}
+	}
+
+	/**
+	 * Get the count of results evicted because the cache was full or they
+	 * were expired - invalidated results are not counted.
+	 * 
+	 * @return count of evictions
+	 */
+	public long getEvictionCount() {
+		synchronized (results) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * A cached result.
+	 */
+	private static class Result {
+
+		private final Object value;
+
+		/**
+		 * Time of expiration in nanoseconds, <code>0</code> for never.
+		 */
+		private final long expiration;
+
+		/**
+		 * Create a result.
+		 * 
+		 * @param value
+		 *            the result value
+		 * @param expiration
+		 *            time of expiration
+		 */
+		Result(Object value, long expiration) {
+			this.value = value;
+			this.expiration = expiration;
+		}
+
+		/**
+		 * Is this result expired.
+		 * 
+		 * @param now
+		 *            current time in nanoseconds
+		 * @return <code>true</code> if expired
+		 */
+		boolean isExpired(long now) {
+			return expiration != 0 && now - expiration >= 0;
+		}
+	}
+}
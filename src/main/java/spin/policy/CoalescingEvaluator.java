@@ -0,0 +1,267 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.off.Dispatcher;
+import spin.off.DispatcherFactory;
+import spin.off.SpinOffEvaluator;
+
+/**
+ * An evaluator coalescing concurrent invocations of methods annotated with
+ * {@link Coalesce}: while an invocation is in flight, further invocations on
+ * the same object of the same method with equal arguments are not evaluated
+ * but wait for the result of the first one. <br>
+ * The first invocation is passed to a wrapped evaluator, all others wait by
+ * dispatching events if called on the EDT. Invocations of methods without
+ * annotation are passed to the wrapped evaluator unchanged.
+ * 
+ * <pre>
+ * Spin.setDefaultOffEvaluator(new CoalescingEvaluator(new SpinOffEvaluator()));
+ * </pre>
+ * 
+ * @see #getCoalescedCount()
+ */
+public class CoalescingEvaluator extends Evaluator {
+
+	private Evaluator evaluator;
+
+	/**
+	 * The factory of dispatchers, <code>null</code> for the default.
+	 */
+	private DispatcherFactory dispatcherFactory;
+
+	/**
+	 * The invocations in flight.
+	 */
+	private final ConcurrentMap flights = new ConcurrentHashMap();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Create an evaluator using the default dispatcher factory of
+	 * {@link SpinOffEvaluator}.
+	 * 
+	 * @param evaluator
+	 *            the evaluator of invocations
+	 */
+	public CoalescingEvaluator(Evaluator evaluator) {
+		this(evaluator, null);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            the evaluator of invocations
+	 * @param dispatcherFactory
+	 *            factory of dispatchers for waiting invocations on the EDT,
+	 *            <code>null</code> for the default
+	 */
+	public CoalescingEvaluator(Evaluator evaluator,
+			DispatcherFactory dispatcherFactory) {
+		if (evaluator == null) {
+			throw new IllegalArgumentException("evaluator must not be null");
+		}
+		this.evaluator = evaluator;
+		this.dispatcherFactory = dispatcherFactory;
+	}
+
+	public void evaluate(Invocation invocation) throws Throwable {
+		if (invocation.getMetadata().getAnnotation(Coalesce.class) == null) {
+			evaluator.evaluate(invocation);
+			return;
+		}
+
+		InvocationKey key = new InvocationKey(invocation.getObject(),
+				invocation.getMethod(), invocation.getArguments());
+
+		Flight flight = new Flight(key);
+		Flight existing = (Flight) flights.putIfAbsent(key, flight);
+		if (existing == null) {
+			FlightInvocation leading = new FlightInvocation(invocation, flight);
+			try {
+				evaluator.evaluate(leading);
+			} catch (Throwable throwable) {
+				flight.complete(null, throwable);
+				throw throwable;
+			}
+
+			if (!leading.isEvaluated()) {
+				// evaluator did not evaluate, do not let others wait forever
+				flight.complete(leading.getResult(), leading.getThrowable());
+			}
+
+			invocation.setResult(leading.getResult());
+			invocation.setThrowable(leading.getThrowable());
+		} else {
+			coalesced.incrementAndGet();
+
+			existing.await();
+
+			invocation.setResult(existing.result);
+			invocation.setThrowable(existing.throwable);
+		}
+	}
+
+	/**
+	 * Get the count of invocations which were not evaluated but waited for the
+	 * result of another invocation.
+	 * 
+	 * @return count of coalesced invocations
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * An invocation in flight.
+	 */
+	private class Flight {
+
+		private final InvocationKey key;
+
+		private boolean completed;
+
+		private Object result;
+
+		private Throwable throwable;
+
+		/**
+		 * The dispatchers of waiting invocations on the EDT.
+		 */
+		private List dispatchers = new ArrayList();
+
+		/**
+		 * Create a flight.
+		 * 
+		 * @param key
+		 *            key of the invocation
+		 */
+		Flight(InvocationKey key) {
+			this.key = key;
+		}
+
+		/**
+		 * Complete this flight - further invocations start a new flight.
+		 * 
+		 * @param result
+		 *            the result
+		 * @param throwable
+		 *            the throwable
+		 */
+		void complete(Object result, Throwable throwable) {
+			flights.remove(key, this);
+
+			List dispatchers;
+			synchronized (this) {
+				if (completed) {
+					return;
+				}
+				this.result = result;
+				this.throwable = throwable;
+				completed = true;
+
+				dispatchers = this.dispatchers;
+				this.dispatchers = null;
+
+				notifyAll();
+			}
+
+			for (int d = 0; d < dispatchers.size(); d++) {
+				((Dispatcher) dispatchers.get(d)).stop();
+			}
+		}
+
+		/**
+		 * Wait for completion, dispatching events if called on the EDT.
+		 * 
+		 * @throws Throwable
+		 */
+		void await() throws Throwable {
+			if (SwingUtilities.isEventDispatchThread()) {
+				DispatcherFactory dispatcherFactory = CoalescingEvaluator.this.dispatcherFactory;
+				if (dispatcherFactory == null) {
+					dispatcherFactory = SpinOffEvaluator
+							.getDefaultDispatcherFactory();
+				}
+
+				Dispatcher dispatcher = dispatcherFactory.createDispatcher();
+				synchronized (this) {
+					if (completed) {
+						return;
+					}
+					dispatchers.add(dispatcher);
+				}
+				dispatcher.start();
+			} else {
+				synchronized (this) {
+					while (!completed) {
+						wait();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The leading invocation of a flight, completing the latter as soon as it
+	 * is evaluated.
+	 */
+	private static class FlightInvocation extends Invocation {
+
+		private final Flight flight;
+
+		/**
+		 * Create an invocation for the given flight.
+		 * 
+		 * @param invocation
+		 *            original invocation
+		 * @param flight
+		 *            the flight
+		 */
+		FlightInvocation(Invocation invocation, Flight flight) {
+			super(invocation.getObject(), invocation.getMetadata(), invocation
+					.getArguments());
+
+			this.flight = flight;
+		}
+
+		protected Object invoke() throws Throwable {
+			Object result;
+			try {
+				result = super.invoke();
+			} catch (Throwable throwable) {
+				flight.complete(null, throwable);
+				throw throwable;
+			}
+			flight.complete(result, null);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,413 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.MethodMetadata;
+
+/**
+ * An evaluator limiting the count of concurrent evaluations - globally, for
+ * each object and for each method annotated with {@link Limit}. <br>
+ * Permits are acquired by the thread actually evaluating an invocation, i.e.
+ * when wrapping an evaluator for spin-off the EDT keeps dispatching events
+ * while an invocation waits for a permit. Waiting invocations are granted
+ * permits in order. If a maximum count of waiting invocations is exceeded,
+ * further invocations are rejected with a {@link RejectedExecutionException}.
+ * Waiting can be interrupted, e.g. by a timeout of spin-off.
+ * 
+ * <pre>
+ * Spin.setDefaultOffEvaluator(new ConcurrencyLimitEvaluator(
+ * 		new SpinOffEvaluator(), 8, 1, 16));
+ * </pre>
+ */
+public class ConcurrencyLimitEvaluator extends Evaluator {
+
+	private Evaluator evaluator;
+
+	/**
+	 * Permits for all evaluations, <code>null</code> if unlimited.
+	 */
+	private final Semaphore global;
+
+	/**
+	 * The count of permits for each object, <code>0</code> for unlimited.
+	 */
+	private final int objectPermits;
+
+	/**
+	 * Maximum count of waiting invocations, <code>0</code> for unlimited.
+	 */
+	private final int maxWaiting;
+
+	/**
+	 * Permits for each object in use - guarded by itself.
+	 */
+	private final Map objects = new HashMap();
+
+	/**
+	 * Permits for each annotated method, in a map for each declaring class
+	 * that is released together with the class.
+	 */
+	private final ClassValue methods = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new ConcurrentHashMap();
+		}
+	};
+
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	private final AtomicInteger active = new AtomicInteger();
+
+	private final AtomicLong waits = new AtomicLong();
+
+	private final AtomicLong waitTime = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            the evaluator of invocations
+	 * @param globalPermits
+	 *            count of concurrent evaluations, <code>0</code> for
+	 *            unlimited
+	 * @param objectPermits
+	 *            count of concurrent evaluations on each object,
+	 *            <code>0</code> for unlimited
+	 * @param maxWaiting
+	 *            maximum count of invocations waiting for a permit,
+	 *            <code>0</code> for unlimited
+	 */
+	public ConcurrencyLimitEvaluator(Evaluator evaluator, int globalPermits,
+			int objectPermits, int maxWaiting) {
+		if (evaluator == null) {
+			throw new IllegalArgumentException("evaluator must not be null");
+		}
+		if (globalPermits < 0 || objectPermits < 0 || maxWaiting < 0) {
+			throw new IllegalArgumentException("limits must not be negative");
+		}
+		this.evaluator = evaluator;
+		this.objectPermits = objectPermits;
+		this.maxWaiting = maxWaiting;
+
+		global = globalPermits > 0 ? new Semaphore(globalPermits, true) : null;
+	}
+
+	public void evaluate(Invocation invocation) throws Throwable {
+		LimitedInvocation limited = new LimitedInvocation(invocation);
+
+		evaluator.evaluate(limited);
+
+		invocation.setResult(limited.getResult());
+		invocation.setThrowable(limited.getThrowable());
+	}
+
+	/**
+	 * Get the count of invocations currently evaluated.
+	 * 
+	 * @return count of active invocations
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * Get the count of invocations currently waiting for a permit.
+	 * 
+	 * @return count of waiting invocations
+	 */
+	public int getWaitingCount() {
+		return waiting.get();
+	}
+
+	/**
+	 * Get the count of invocations rejected as too many were waiting.
+	 * 
+	 * @return count of rejected invocations
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Get the count of invocations which had to wait for a permit.
+	 * 
+	 * @return count of waits
+	 */
+	public long getWaitCount() {
+		return waits.get();
+	}
+
+	/**
+	 * Get the total time invocations waited for permits.
+	 * 
+	 * @return wait time in nanoseconds
+	 */
+	public long getWaitTime() {
+		return waitTime.get();
+	}
+
+	/**
+	 * Acquire a permit, waiting if none is available.
+	 * 
+	 * @param semaphore
+	 *            semaphore to acquire from
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	private void acquire(Semaphore semaphore) throws InterruptedException {
+		// unlike tryAcquire() honors fairness
+		if (semaphore.tryAcquire(0, TimeUnit.SECONDS)) {
+			return;
+		}
+
+		int waiting = this.waiting.incrementAndGet();
+		if (maxWaiting > 0 && waiting > maxWaiting) {
+			this.waiting.decrementAndGet();
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException("too many waiting invocations");
+		}
+		long start = System.nanoTime();
+		try {
+			semaphore.acquire();
+		} finally {
+			this.waiting.decrementAndGet();
+			waits.incrementAndGet();
+			waitTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Get the permits for the given method.
+	 * 
+	 * @param metadata
+	 *            metadata of method
+	 * @return permits, <code>null</code> if unlimited
+	 */
+	private Semaphore getMethodPermits(MethodMetadata metadata) {
+		ConcurrentMap methods = (ConcurrentMap) this.methods.get(metadata
+				.getMethod().getDeclaringClass());
+
+		Semaphore semaphore = (Semaphore) methods.get(metadata);
+		if (semaphore == null) {
+			Limit limit = (Limit) metadata.getAnnotation(Limit.class);
+			if (limit == null) {
+				return null;
+			}
+			semaphore = new Semaphore(limit.value(), true);
+
+			Semaphore existing = (Semaphore) methods.putIfAbsent(metadata,
+					semaphore);
+			if (existing != null) {
+				semaphore = existing;
+			}
+		}
+		return semaphore;
+	}
+
+	/**
+	 * Get the permits of the given object, registering a user.
+	 * 
+	 * @param key
+	 *            key of the object
+	 * @return permits
+	 * @see #releaseObjectPermits(ObjectKey)
+	 */
+	private ObjectPermits acquireObjectPermits(ObjectKey key) {
+		synchronized (objects) {
+			ObjectPermits permits = (ObjectPermits) objects.get(key);
+			if (permits == null) {
+				permits = new ObjectPermits(objectPermits);
+				objects.put(key, permits);
+			}
+			permits.users++;
+			return permits;
+		}
+	}
+
+	/**
+	 * Unregister a user of the permits of the given object.
+	 * 
+	 * @param key
+	 *            key of the object
+	 */
+	private void releaseObjectPermits(ObjectKey key) {
+		synchronized (objects) {
+			ObjectPermits permits = (ObjectPermits) objects.get(key);
+			if (--permits.users == 0) {
+				objects.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Key of an object by identity.
+	 */
+	private static class ObjectKey {
+
+		private final Object object;
+
+		/**
+		 * Create a key.
+		 * 
+		 * @param object
+		 *            the object
+		 */
+		ObjectKey(Object object) {
+			this.object = object;
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(object);
+		}
+
+		public boolean equals(Object other) {
+			return other instanceof ObjectKey
+					&& ((ObjectKey) other).object == object;
+		}
+	}
+
+	/**
+	 * The permits of an object.
+	 */
+	private static class ObjectPermits extends Semaphore {
+
+		/**
+		 * Count of invocations using these permits - guarded by the objects.
+		 */
+		int users;
+
+		/**
+		 * Create permits.
+		 * 
+		 * @param permits
+		 *            count of permits
+		 */
+		ObjectPermits(int permits) {
+			super(permits, true);
+		}
+	}
+
+	/**
+	 * An invocation acquiring permits when invoked.
+	 */
+	private class LimitedInvocation extends Invocation {
+
+		/**
+		 * Create an invocation.
+		 * 
+		 * @param invocation
+		 *            original invocation
+		 */
+		LimitedInvocation(Invocation invocation) {
+			super(invocation.getObject(), invocation.getMetadata(), invocation
+					.getArguments());
+		}
+
+		/**
+		 * Overriden to acquire the most specific permits first, so
+		 * invocations waiting for an object or method do not hold global
+		 * permits.
+		 */
+		protected Object invoke() throws Throwable {
+			Semaphore permits = getMethodPermits(getMetadata());
+			if (permits == null) {
+				return invokeObject();
+			}
+
+			acquire(permits);
+			try {
+				return invokeObject();
+			} finally {
+				permits.release();
+			}
+		}
+
+		/**
+		 * Invoke with the permits of the object.
+		 * 
+		 * @return result of invocation
+		 * @throws Throwable
+		 */
+		private Object invokeObject() throws Throwable {
+			if (objectPermits == 0) {
+				return invokeGlobal();
+			}
+
+			ObjectKey key = new ObjectKey(getObject());
+			ObjectPermits permits = acquireObjectPermits(key);
+			try {
+				acquire(permits);
+				try {
+					return invokeGlobal();
+				} finally {
+					permits.release();
+				}
+			} finally {
+				releaseObjectPermits(key);
+			}
+		}
+
+		/**
+		 * Invoke with the global permits.
+		 * 
+		 * @return result of invocation
+		 * @throws Throwable
+		 */
+		private Object invokeGlobal() throws Throwable {
+			if (global == null) {
+				return invokeActive();
+			}
+
+			acquire(global);
+			try {
+				return invokeActive();
+			} finally {
+				global.release();
+			}
+		}
+
+		/**
+		 * Invoke with all permits acquired.
+		 * 
+		 * @return result of invocation
+		 * @throws Throwable
+		 */
+		private Object invokeActive() throws Throwable {
+			active.incrementAndGet();
+			try {
+				return super.invoke();
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Key of an invocation, identifying its object by identity and its method and
+ * arguments by equality.
+ */
+class InvocationKey {
+
+	private final Object object;
+
+	private final Method method;
+
+	private final Object[] args;
+
+	private final int hash;
+
+	/**
+	 * Create a key.
+	 * 
+	 * @param object
+	 *            object of invocation
+	 * @param method
+	 *            method of invocation
+	 * @param args
+	 *            arguments of invocation
+	 */
+	InvocationKey(Object object, Method method, Object[] args) {
+		this.object = object;
+		this.method = method;
+		this.args = args;
+
+		int hash = System.identityHashCode(object);
+		hash = 31 * hash + method.hashCode();
+		hash = 31 * hash + Arrays.hashCode(args);
+		this.hash = hash;
+	}
+
+	/**
+	 * Get the object of the invocation.
+	 * 
+	 * @return the object
+	 */
+	Object getObject() {
+		return object;
+	}
+
+	/**
+	 * Get the method of the invocation.
+	 * 
+	 * @return the method
+	 */
+	Method getMethod() {
+		return method;
+	}
+
+	public int hashCode() {
+		return hash;
+	}
+
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof InvocationKey)) {
+			return false;
+		}
+		InvocationKey key = (InvocationKey) other;
+
+		return hash == key.hash && object == key.object
+				&& method.equals(key.method) && Arrays.equals(args, key.args);
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.MethodMetadata;
+import spin.off.SpinOffEvaluator;
+import spin.off.Starter;
+import spin.over.SpinOverEvaluator;
+
+/**
+ * An evaluator selecting the evaluation of each invocation by annotations of
+ * the invoked method:
+ * <ul>
+ * <li>{@link Off} - evaluate with an evaluator for spin-off</li>
+ * <li>{@link Over} - evaluate with an evaluator for spin-over</li>
+ * <li>{@link Inline} - evaluate on the calling thread</li>
+ * <li>{@link Async} - evaluate asynchronously without waiting</li>
+ * </ul>
+ * Invocations of methods without any of these annotations are evaluated by a
+ * wrapped evaluator. Annotations are resolved once for each method, including
+ * the methods of all interfaces of its declaring class. <br>
+ * Install it globally by calling the static method:
+ * 
+ * <pre>
+ * Spin.setDefaultOffEvaluator(new PolicyEvaluator());
+ * </pre>
+ * 
+ * @see MethodMetadata#getAnnotation(Class)
+ */
+public class PolicyEvaluator extends Evaluator {
+
+	private static final Integer DEFAULT = Integer.valueOf(0);
+
+	private static final Integer INLINE = Integer.valueOf(1);
+
+	private static final Integer OFF = Integer.valueOf(2);
+
+	private static final Integer OVER = Integer.valueOf(3);
+
+	private static final Integer ASYNC = Integer.valueOf(4);
+
+	/**
+	 * The resolved policies of methods keyed by their declaring class, so
+	 * this cache does not prevent class loaders from being garbage collected.
+	 */
+	private static final ClassValue policies = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new ConcurrentHashMap();
+		}
+	};
+
+	private Evaluator evaluator;
+
+	private Evaluator offEvaluator;
+
+	private Evaluator overEvaluator;
+
+	/**
+	 * The starter for asynchronous evaluation, <code>null</code> for the
+	 * default.
+	 */
+	private Starter starter;
+
+	/**
+	 * Create an evaluator evaluating invocations of methods without annotation
+	 * with a {@link SpinOffEvaluator}.
+	 */
+	public PolicyEvaluator() {
+		this(new SpinOffEvaluator());
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            the evaluator for methods without annotation
+	 */
+	public PolicyEvaluator(Evaluator evaluator) {
+		this(evaluator, new SpinOffEvaluator(), new SpinOverEvaluator(), null);
+	}
+
+	/**
+	 * Create an evaluator.
+	 * 
+	 * @param evaluator
+	 *            the evaluator for methods without annotation
+	 * @param offEvaluator
+	 *            the evaluator for methods annotated with {@link Off}
+	 * @param overEvaluator
+	 *            the evaluator for methods annotated with {@link Over}
+	 * @param starter
+	 *            the starter for methods annotated with {@link Async},
+	 *            <code>null</code> for the default
+	 * @see SpinOffEvaluator#setDefaultStarter(Starter)
+	 */
+	public PolicyEvaluator(Evaluator evaluator, Evaluator offEvaluator,
+			Evaluator overEvaluator, Starter starter) {
+		this.evaluator = evaluator;
+		this.offEvaluator = offEvaluator;
+		this.overEvaluator = overEvaluator;
+		this.starter = starter;
+	}
+
+	public void evaluate(Invocation invocation) throws Throwable {
+		Integer policy = getPolicy(invocation.getMetadata());
+
+		if (policy == INLINE) {
+			invocation.evaluate();
+		} else if (policy == OFF) {
+			offEvaluator.evaluate(invocation);
+		} else if (policy == OVER) {
+			overEvaluator.evaluate(invocation);
+		} else if (policy == ASYNC) {
+			evaluateAsync(invocation);
+		} else {
+			evaluator.evaluate(invocation);
+		}
+	}
+
+	/**
+	 * Get the policy of the given method, resolving its annotations once.
+	 * 
+	 * @param metadata
+	 *            metadata of method
+	 * @return the policy
+	 */
+	private Integer getPolicy(MethodMetadata metadata) {
+		ConcurrentMap policies = (ConcurrentMap) PolicyEvaluator.policies
+				.get(metadata.getMethod().getDeclaringClass());
+
+		Integer policy = (Integer) policies.get(metadata);
+		if (policy == null) {
+			if (metadata.getAnnotation(Inline.class) != null) {
+				policy = INLINE;
+			} else if (metadata.getAnnotation(Off.class) != null) {
+				policy = OFF;
+			} else if (metadata.getAnnotation(Over.class) != null) {
+				policy = OVER;
+			} else if (metadata.getAnnotation(Async.class) != null) {
+				policy = ASYNC;
+			} else {
+				policy = DEFAULT;
+			}
+			policies.put(metadata, policy);
+		}
+		return policy;
+	}
+
+	/**
+	 * Evaluate the given invocation asynchronously. <br>
+	 * The caller does not wait, thus a copy of the invocation is evaluated.
+	 * 
+	 * @param invocation
+	 *            invocation to evaluate
+	 * @see Invocation#copy()
+	 */
+	private void evaluateAsync(Invocation invocation) {
+		if (!invocation.getMetadata().isVoid()) {
+			onAsyncNonVoidReturnType(invocation);
+		}
+
+		Starter starter = this.starter;
+		if (starter == null) {
+			starter = SpinOffEvaluator.getDefaultStarter();
+		}
+
+		final Invocation copy = invocation.copy();
+		starter.start(new Runnable() {
+			public void run() {
+				copy.evaluate();
+
+				if (copy.getThrowable() != null) {
+					onAsyncThrowable(copy);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Hook method to handle a non-void return type of an asynchronously
+	 * invoked method.
+	 * 
+	 * @param invocation
+	 *            the invocation
+	 */
+	protected void onAsyncNonVoidReturnType(Invocation invocation) {
+		throw new RuntimeException("async with non-void return type");
+	}
+
+	/**
+	 * Hook method to handle a throwable of an asynchronously evaluated
+	 * invocation - called on the thread that evaluated the invocation. <br>
+	 * This default implementation passes the throwable to the uncaught
+	 * exception handler of the current thread.
+	 * 
+	 * @param invocation
+	 *            the invocation
+	 */
+	protected void onAsyncThrowable(Invocation invocation) {
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread,
+				invocation.getThrowable());
+	}
+}
@@ -24,19 +24,48 @@ import spin.Evaluator;
 import spin.Invocation;
 import spin.ProxyFactory;
 
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Dispatcher;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.Factory;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
 
 /**
- * A factory of proxies utilizing CGLib.
+ * A factory of proxies utilizing CGLib. <br>
+ * Invocations are evaluated with CGLib's fast-class dispatch instead of
+ * reflection. Methods of <code>java.lang.Object</code> which are not
+ * overriden by the proxied class do not need any thread hopping and are
+ * dispatched directly to the proxied object.
  */
 public class CGLibProxyFactory extends ProxyFactory {
 
+	/**
+	 * Index of the callback evaluating invocations.
+	 */
+	private static final int SPIN = 0;
+
+	/**
+	 * Index of the callback dispatching directly to the proxied object.
+	 */
+	private static final int DIRECT = 1;
+
+	/**
+	 * Index of the callback ignoring invocations.
+	 */
+	private static final int IGNORE = 2;
+
+	/**
+	 * The filter is shared, so CGLib can reuse generated classes.
+	 */
+	private static final CallbackFilter filter = new SpinCallbackFilter();
+
 	public Object createProxy(Object object, Evaluator evaluator) {
-		return Enhancer.create(object.getClass(), new SpinMethodInterceptor(
-				object, evaluator));
+		return Enhancer.create(object.getClass(), null, filter,
+				new Callback[] { new SpinMethodInterceptor(object, evaluator),
+						new ObjectDispatcher(object), NoOp.INSTANCE });
 	}
 
 	public boolean isProxy(Object object) {
@@ -53,6 +82,10 @@ public class CGLibProxyFactory extends ProxyFactory {
 		return (factory.getCallback(0) instanceof SpinMethodInterceptor);
 	}
 
+	public Object getObject(Object proxy) {
+		return ((SpinMethodInterceptor) ((Factory) proxy).getCallback(0)).object;
+	}
+
 	protected boolean areProxyEqual(Object proxy1, Object proxy2) {
 		SpinMethodInterceptor methodInterceptor1 = (SpinMethodInterceptor) ((Factory) proxy1)
 				.getCallback(0);
@@ -101,8 +134,104 @@ public class CGLibProxyFactory extends ProxyFactory {
 		 */
 		public Object intercept(Object proxy, Method method, Object[] args,
 				MethodProxy methodProxy) throws Throwable {
-			return evaluteInvocation(evaluator, proxy, new Invocation(
-					this.object, method, args));
+			return evaluteInvocation(evaluator, proxy,
+					new MethodProxyInvocation(this.object, method, args,
+							methodProxy));
+		}
+	}
+
+	/**
+	 * Dispatcher of invocations directly to the proxied object.
+	 */
+	private static class ObjectDispatcher implements Dispatcher {
+
+		private Object object;
+
+		/**
+		 * Create a new dispatcher.
+		 * 
+		 * @param object
+		 *            the object to dispatch to
+		 */
+		public ObjectDispatcher(Object object) {
+			this.object = object;
+		}
+
+		public Object loadObject() {
+			return object;
+		}
+	}
+
+	/**
+	 * Filter of methods selecting the callback to use.
+	 */
+	private static class SpinCallbackFilter implements CallbackFilter {
+
+		/**
+		 * <code>hashCode()</code> and <code>toString()</code> of
+		 * <code>Object</code> are identity based and thus thread-safe, while
+		 * <code>finalize()</code> of a proxy must never be forwarded to the
+		 * proxied object.
+		 */
+		public int accept(Method method) {
+			if (method.getDeclaringClass() == Object.class) {
+				String name = method.getName();
+				if ("hashCode".equals(name) || "toString".equals(name)) {
+					return DIRECT;
+				} else if ("finalize".equals(name)) {
+					return IGNORE;
+				}
+			}
+			return SPIN;
+		}
+
+		public boolean equals(Object object) {
+			return object instanceof SpinCallbackFilter;
+		}
+
+		public int hashCode() {
+			return SpinCallbackFilter.class.hashCode();
+		}
+	}
+
+	/**
+	 * An invocation utilizing a <code>MethodProxy</code> instead of
+	 * reflection.
+	 */
+	private static class MethodProxyInvocation extends Invocation {
+
+		private Method method;
+
+		private MethodProxy methodProxy;
+
+		/**
+		 * Create an invocation.
+		 * 
+		 * @param object
+		 *            object to invoke method on
+		 * @param method
+		 *            method to invoke
+		 * @param args
+		 *            arguments for the method invocation
+		 * @param methodProxy
+		 *            proxy of the method
+		 */
+		public MethodProxyInvocation(Object object, Method method,
+				Object[] args, MethodProxy methodProxy) {
+			super(object, method, args);
+
+			this.method = method;
+			this.methodProxy = methodProxy;
+		}
+
+		/**
+		 * Invoke with fast-class dispatch, unless the method was changed.
+		 */
+		protected Object invoke() throws Throwable {
+			if (getMethod() != method) {
+				return super.invoke();
+			}
+			return methodProxy.invoke(getObject(), getArguments());
 		}
 	}
 }
\ No newline at end of file
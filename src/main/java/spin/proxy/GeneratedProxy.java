@@ -0,0 +1,149 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import spin.Evaluator;
+import spin.Invocation;
+
+/**
+ * Base class of proxies generated at compile time for interfaces marked with
+ * {@link spin.SpinProxy}. <br>
+ * Generated subclasses implement each method of the interface by calling
+ * {@link #evaluate(Method, Object[])} with a precomputed
+ * <code>Method</code>.
+ */
+public abstract class GeneratedProxy {
+
+	/**
+	 * The equals method of class <code>object</code>.
+	 */
+	private static final Method equalsMethod = getMethod(Object.class,
+			"equals", new Class[] { Object.class });
+
+	/**
+	 * The hashCode method of class <code>object</code>.
+	 */
+	private static final Method hashCodeMethod = getMethod(Object.class,
+			"hashCode", new Class[0]);
+
+	/**
+	 * The toString method of class <code>object</code>.
+	 */
+	private static final Method toStringMethod = getMethod(Object.class,
+			"toString", new Class[0]);
+
+	private GeneratedProxyFactory factory;
+
+	Object object;
+
+	private Evaluator evaluator;
+
+	/**
+	 * Create a proxy.
+	 * 
+	 * @param factory
+	 *            the factory of this proxy
+	 * @param object
+	 *            the object to invoke methods on
+	 * @param evaluator
+	 *            the evaluator of methods
+	 */
+	protected GeneratedProxy(GeneratedProxyFactory factory, Object object,
+			Evaluator evaluator) {
+		this.factory = factory;
+		this.object = object;
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Evaluate the invocation of the given method.
+	 * 
+	 * @param method
+	 *            the method to invoke
+	 * @param args
+	 *            the arguments for the method
+	 * @return the result of the invocation on the wrapped object
+	 * @throws Throwable
+	 *             if the wrapped method throws a <code>Throwable</code>
+	 */
+	protected final Object evaluate(Method method, Object[] args)
+			throws Throwable {
+		return factory.evaluate(evaluator, this, new Invocation(object,
+				method, args));
+	}
+
+	public boolean equals(Object object) {
+		return ((Boolean) evaluateObjectMethod(equalsMethod,
+				new Object[] { object })).booleanValue();
+	}
+
+	public int hashCode() {
+		return ((Integer) evaluateObjectMethod(hashCodeMethod, null))
+				.intValue();
+	}
+
+	public String toString() {
+		return (String) evaluateObjectMethod(toStringMethod, null);
+	}
+
+	/**
+	 * Evaluate a method of <code>Object</code>, which does not declare any
+	 * checked exceptions.
+	 * 
+	 * @param method
+	 *            the method to invoke
+	 * @param args
+	 *            the arguments for the method
+	 * @return the result of the invocation on the wrapped object
+	 */
+	private Object evaluateObjectMethod(Method method, Object[] args) {
+		try {
+			return evaluate(method, args);
+		} catch (RuntimeException ex) {
+			throw ex;
+		} catch (Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new UndeclaredThrowableException(ex);
+		}
+	}
+
+	/**
+	 * Utility method for generated proxies to get a method.
+	 * 
+	 * @param clazz
+	 *            class declaring the method
+	 * @param name
+	 *            name of the method
+	 * @param parameterTypes
+	 *            types of parameters
+	 * @return method
+	 */
+	protected static Method getMethod(Class clazz, String name,
+			Class[] parameterTypes) {
+		try {
+			return clazz.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException ex) {
+			throw new Error(ex);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.ProxyFactory;
+
+/**
+ * Base class of factories of proxies generated at compile time for interfaces
+ * marked with {@link spin.SpinProxy}. <br>
+ * For an interface <code>com.example.Bean</code> the <em>Spin</em> annotation
+ * processor generates the proxy class <code>com.example.Bean_SpinProxy</code>
+ * with a nested factory <code>Factory</code>, nested interfaces are joined
+ * with an underscore, e.g. <code>com.example.Outer_Bean_SpinProxy</code>.
+ * 
+ * @see GeneratedProxy
+ * @see ProxyFactory#getRegisteredProxyFactory(Class)
+ */
+public abstract class GeneratedProxyFactory extends ProxyFactory {
+
+	/**
+	 * Suffix of the names of generated proxy classes.
+	 */
+	public static final String SUFFIX = "_SpinProxy";
+
+	public boolean isProxy(Object object) {
+		return object instanceof GeneratedProxy;
+	}
+
+	public Object getObject(Object proxy) {
+		return ((GeneratedProxy) proxy).object;
+	}
+
+	protected boolean areProxyEqual(Object proxy1, Object proxy2) {
+		return ((GeneratedProxy) proxy1).object
+				.equals(((GeneratedProxy) proxy2).object);
+	}
+
+	/**
+	 * Evaluate the given invocation with the given evaluator - called by
+	 * {@link GeneratedProxy}s.
+	 * 
+	 * @param evaluator
+	 *            evaluator to evaluate with
+	 * @param proxy
+	 *            proxy that intcepted the invocation
+	 * @param invocation
+	 *            the invocation to evaluate
+	 * @return result of evaluation
+	 * @throws Throwable
+	 */
+	final Object evaluate(Evaluator evaluator, Object proxy,
+			Invocation invocation) throws Throwable {
+		return evaluteInvocation(evaluator, proxy, invocation);
+	}
+
+	/**
+	 * Get the name of the factory of proxies generated for the given
+	 * interface.
+	 * 
+	 * @param type
+	 *            interface to get factory name for
+	 * @return name of the factory class
+	 */
+	public static String getFactoryName(Class type) {
+		return type.getName().replace('$', '_') + SUFFIX + "$Factory";
+	}
+}
@@ -0,0 +1,249 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.MethodMetadata;
+
+/**
+ * Base class of proxies generated as hidden classes by
+ * {@link HiddenProxyFactory}. <br>
+ * Generated subclasses implement each method of the proxied interfaces by
+ * calling {@link #evaluate(int, Object[])} with the index of the method, and
+ * {@link #dispatch(int, Object, Object[])} with a direct
+ * <code>invokeinterface</code> on the proxied object.
+ */
+public abstract class HiddenProxy {
+
+	/**
+	 * The equals method of class <code>object</code>.
+	 */
+	private static final Method equalsMethod = getMethod("equals",
+			new Class[] { Object.class });
+
+	/**
+	 * The hashCode method of class <code>object</code>.
+	 */
+	private static final Method hashCodeMethod = getMethod("hashCode",
+			new Class[0]);
+
+	/**
+	 * The toString method of class <code>object</code>.
+	 */
+	private static final Method toStringMethod = getMethod("toString",
+			new Class[0]);
+
+	private HiddenProxyFactory factory;
+
+	Object object;
+
+	private Evaluator evaluator;
+
+	private MethodMetadata[] methods;
+
+	/**
+	 * Create a proxy.
+	 * 
+	 * @param factory
+	 *            the factory of this proxy
+	 * @param object
+	 *            the object to invoke methods on
+	 * @param evaluator
+	 *            the evaluator of methods
+	 * @param methods
+	 *            metadata of the implemented methods in order of their
+	 *            indices
+	 */
+	protected HiddenProxy(HiddenProxyFactory factory, Object object,
+			Evaluator evaluator, MethodMetadata[] methods) {
+		this.factory = factory;
+		this.object = object;
+		this.evaluator = evaluator;
+		this.methods = methods;
+	}
+
+	/**
+	 * Evaluate the invocation of the method with the given index. <br>
+	 * Checked exceptions not declared by the method are wrapped in an
+	 * {@link UndeclaredThrowableException}, since generated methods do not
+	 * check them.
+	 * 
+	 * @param index
+	 *            index of the method to invoke
+	 * @param args
+	 *            the arguments for the method
+	 * @return the result of the invocation on the wrapped object
+	 * @throws Throwable
+	 *             if the wrapped method throws a <code>Throwable</code>
+	 */
+	protected final Object evaluate(int index, Object[] args)
+			throws Throwable {
+		MethodMetadata metadata = methods[index];
+		try {
+			return factory.evaluate(evaluator, this, new HiddenInvocation(
+					this, index, object, metadata, args));
+		} catch (Throwable ex) {
+			throw checkDeclared(metadata.getMethod(), ex);
+		}
+	}
+
+	/**
+	 * Check whether the given throwable is declared by the given method.
+	 * 
+	 * @param method
+	 *            method
+	 * @param throwable
+	 *            throwable to check
+	 * @return the throwable itself if unchecked or declared, otherwise an
+	 *         {@link UndeclaredThrowableException}
+	 */
+	private static Throwable checkDeclared(Method method, Throwable throwable) {
+		if (throwable instanceof RuntimeException
+				|| throwable instanceof Error) {
+			return throwable;
+		}
+		Class[] exceptions = method.getExceptionTypes();
+		for (int e = 0; e < exceptions.length; e++) {
+			if (exceptions[e].isInstance(throwable)) {
+				return throwable;
+			}
+		}
+		return new UndeclaredThrowableException(throwable);
+	}
+
+	/**
+	 * Invoke the method with the given index directly on the given object.
+	 * 
+	 * @param index
+	 *            index of the method to invoke
+	 * @param object
+	 *            object to invoke method on
+	 * @param args
+	 *            the arguments for the method
+	 * @return the result of the invocation, boxed if primitive
+	 * @throws Throwable
+	 *             if the method throws a <code>Throwable</code>
+	 */
+	protected abstract Object dispatch(int index, Object object, Object[] args)
+			throws Throwable;
+
+	public boolean equals(Object object) {
+		return ((Boolean) evaluateObjectMethod(equalsMethod,
+				new Object[] { object })).booleanValue();
+	}
+
+	public int hashCode() {
+		return ((Integer) evaluateObjectMethod(hashCodeMethod, null))
+				.intValue();
+	}
+
+	public String toString() {
+		return (String) evaluateObjectMethod(toStringMethod, null);
+	}
+
+	/**
+	 * Evaluate a method of <code>Object</code>, which does not declare any
+	 * checked exceptions.
+	 * 
+	 * @param method
+	 *            the method to invoke
+	 * @param args
+	 *            the arguments for the method
+	 * @return the result of the invocation on the wrapped object
+	 */
+	private Object evaluateObjectMethod(Method method, Object[] args) {
+		try {
+			return factory.evaluate(evaluator, this, new Invocation(object,
+					method, args));
+		} catch (RuntimeException ex) {
+			throw ex;
+		} catch (Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new UndeclaredThrowableException(ex);
+		}
+	}
+
+	/**
+	 * Utility method to get a method of <code>Object</code>.
+	 * 
+	 * @param name
+	 *            name of the method
+	 * @param parameterTypes
+	 *            types of parameters
+	 * @return method
+	 */
+	private static Method getMethod(String name, Class[] parameterTypes) {
+		try {
+			return Object.class.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException ex) {
+			throw new Error(ex);
+		}
+	}
+
+	/**
+	 * An invocation dispatching directly through the proxy instead of
+	 * reflection.
+	 */
+	private static class HiddenInvocation extends Invocation {
+
+		private HiddenProxy proxy;
+
+		private int index;
+
+		private Method method;
+
+		/**
+		 * Create an invocation.
+		 * 
+		 * @param proxy
+		 *            proxy dispatching the invocation
+		 * @param index
+		 *            index of the method
+		 * @param object
+		 *            object to invoke method on
+		 * @param metadata
+		 *            metadata of the method to invoke
+		 * @param args
+		 *            arguments for the method invocation
+		 */
+		public HiddenInvocation(HiddenProxy proxy, int index, Object object,
+				MethodMetadata metadata, Object[] args) {
+			super(object, metadata, args);
+
+			this.proxy = proxy;
+			this.index = index;
+			this.method = metadata.getMethod();
+		}
+
+		/**
+		 * Invoke with direct dispatch, unless the method was changed.
+		 */
+		protected Object invoke() throws Throwable {
+			if (getMethod() != method) {
+				return super.invoke();
+			}
+			return proxy.dispatch(index, getObject(), getArguments());
+		}
+	}
+}
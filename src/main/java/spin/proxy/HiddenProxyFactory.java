@@ -0,0 +1,513 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import spin.Evaluator;
+import spin.Invocation;
+import spin.MethodMetadata;
+import spin.ProxyFactory;
+
+/**
+ * A factory of proxies utilizing hidden classes, available since Java 15. <br>
+ * For each set of interfaces a proxy class is generated and defined as a
+ * hidden class, thus it can be unloaded as soon as it is no longer
+ * referenced. Invocations are not handled by reflection, but dispatched by a
+ * direct <code>invokeinterface</code> to the proxied object. <br>
+ * Proxy classes are defined in the package of <em>Spin</em> if possible,
+ * otherwise in the package of the proxied interfaces, which requires the
+ * latter to be open for deep reflection.
+ * 
+ * @see #isAvailable()
+ */
+public class HiddenProxyFactory extends ProxyFactory {
+
+	/**
+	 * Access mode <code>Lookup.MODULE</code> since Java 9.
+	 */
+	private static final int MODULE = 0x10;
+
+	private static final Method privateLookupIn;
+
+	private static final Method defineClass;
+
+	private static final Method defineHiddenClass;
+
+	private static final Object noOptions;
+
+	static {
+		Method privateLookupInMethod = null;
+		Method defineClassMethod = null;
+		Method defineHiddenClassMethod = null;
+		Object noOptionsArray = null;
+		try {
+			Class options = Class
+					.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+
+			privateLookupInMethod = MethodHandles.class.getMethod(
+					"privateLookupIn", new Class[] { Class.class,
+							Lookup.class });
+			defineClassMethod = Lookup.class.getMethod("defineClass",
+					new Class[] { byte[].class });
+			defineHiddenClassMethod = Lookup.class.getMethod(
+					"defineHiddenClass", new Class[] { byte[].class,
+							Boolean.TYPE, Array.newInstance(options, 0)
+									.getClass() });
+			noOptionsArray = Array.newInstance(options, 0);
+		} catch (Exception notAvailable) {
+			defineHiddenClassMethod = null;
+		}
+		privateLookupIn = privateLookupInMethod;
+		defineClass = defineClassMethod;
+		defineHiddenClass = defineHiddenClassMethod;
+		noOptions = noOptionsArray;
+	}
+
+	/**
+	 * The hosts of proxy classes keyed by the class defining their package.
+	 */
+	private static final ClassValue hosts = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new Host(clazz);
+		}
+	};
+
+	/**
+	 * The types of proxies keyed by the class of the proxied object. Since the
+	 * values are attached to the proxied classes, this cache does not prevent
+	 * class loaders from being garbage collected.
+	 */
+	private static final ClassValue proxyTypes = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return getProxyType(clazz);
+		}
+	};
+
+	/**
+	 * Create a factory.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if hidden classes are not available
+	 * @see #isAvailable()
+	 */
+	public HiddenProxyFactory() {
+		if (!isAvailable()) {
+			throw new UnsupportedOperationException(
+					"hidden classes are not available");
+		}
+	}
+
+	/**
+	 * Are hidden classes available in the running JRE.
+	 * 
+	 * @return <code>true</code> if available
+	 */
+	public static boolean isAvailable() {
+		return defineHiddenClass != null;
+	}
+
+	/**
+	 * The created proxy will not implement non-public interfaces from different
+	 * class loaders.
+	 * 
+	 * @see JDKProxyFactory#createProxy(Object, Evaluator)
+	 */
+	public Object createProxy(Object object, Evaluator evaluator) {
+		ProxyType type = (ProxyType) proxyTypes.get(object.getClass());
+
+		return type.newInstance(this, object, evaluator);
+	}
+
+	public boolean isProxy(Object object) {
+		return object instanceof HiddenProxy;
+	}
+
+	public Object getObject(Object proxy) {
+		return ((HiddenProxy) proxy).object;
+	}
+
+	protected boolean areProxyEqual(Object proxy1, Object proxy2) {
+		return ((HiddenProxy) proxy1).object
+				.equals(((HiddenProxy) proxy2).object);
+	}
+
+	/**
+	 * Evaluate the given invocation with the given evaluator - called by
+	 * {@link HiddenProxy}s.
+	 * 
+	 * @param evaluator
+	 *            evaluator to evaluate with
+	 * @param proxy
+	 *            proxy that intercepted the invocation
+	 * @param invocation
+	 *            the invocation to evaluate
+	 * @return result of evaluation
+	 * @throws Throwable
+	 */
+	final Object evaluate(Evaluator evaluator, Object proxy,
+			Invocation invocation) throws Throwable {
+		return evaluteInvocation(evaluator, proxy, invocation);
+	}
+
+	/**
+	 * Get the type of proxies for all accessible interfaces of the given
+	 * class.
+	 * 
+	 * @param clazz
+	 *            class to get proxy type for
+	 * @return type of proxies
+	 */
+	private static ProxyType getProxyType(Class clazz) {
+		Class[] interfaces = JDKProxyFactory.getAccessibleInterfaces(clazz);
+		Arrays.sort(interfaces, new Comparator() {
+			public int compare(Object class1, Object class2) {
+				return ((Class) class1).getName().compareTo(
+						((Class) class2).getName());
+			}
+		});
+
+		Host host = (Host) hosts.get(getHostClass(clazz, interfaces));
+
+		return host.getProxyType(interfaces);
+	}
+
+	/**
+	 * Get the class defining the package to host the proxy class for the given
+	 * interfaces. <br>
+	 * Proxy classes for public interfaces visible to <em>Spin</em> are shared
+	 * in its own package, otherwise they are hosted by a non-public interface
+	 * (all of which have to be in the same package) or by an interface which
+	 * is able to see all others.
+	 * 
+	 * @param clazz
+	 *            class of proxied objects
+	 * @param interfaces
+	 *            interfaces to proxy
+	 * @return class defining the package
+	 */
+	private static Class getHostClass(Class clazz, Class[] interfaces) {
+		for (int i = 0; i < interfaces.length; i++) {
+			if (!Modifier.isPublic(interfaces[i].getModifiers())) {
+				return interfaces[i];
+			}
+		}
+
+		if (canSee(HiddenProxyFactory.class.getClassLoader(), interfaces)) {
+			return HiddenProxyFactory.class;
+		}
+
+		for (int i = 0; i < interfaces.length; i++) {
+			if (canSee(interfaces[i].getClassLoader(), interfaces)) {
+				return interfaces[i];
+			}
+		}
+
+		return clazz;
+	}
+
+	/**
+	 * Can the given loader see all of the given classes.
+	 * 
+	 * @param loader
+	 *            loader
+	 * @param classes
+	 *            classes to test
+	 * @return <code>true</code> if all classes are visible
+	 */
+	private static boolean canSee(ClassLoader loader, Class[] classes) {
+		for (int c = 0; c < classes.length; c++) {
+			try {
+				if (Class.forName(classes[c].getName(), false, loader) != classes[c]) {
+					return false;
+				}
+			} catch (ClassNotFoundException ex) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Invoke a method of <code>Lookup</code> which might not be available at
+	 * compile time.
+	 * 
+	 * @param method
+	 *            method to invoke
+	 * @param target
+	 *            target of invocation
+	 * @param args
+	 *            arguments
+	 * @return result of invocation
+	 * @throws Throwable
+	 *             the throwable thrown by the method
+	 */
+	private static Object invoke(Method method, Object target, Object[] args)
+			throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	}
+
+	/**
+	 * A package hosting proxy classes.
+	 */
+	private static class Host {
+
+		private Class clazz;
+
+		private Lookup lookup;
+
+		private Map types = new ConcurrentHashMap();
+
+		/**
+		 * Create a host.
+		 * 
+		 * @param clazz
+		 *            class defining the package
+		 */
+		public Host(Class clazz) {
+			this.clazz = clazz;
+		}
+
+		/**
+		 * Get the type of proxies for the given interfaces.
+		 * 
+		 * @param interfaces
+		 *            sorted interfaces
+		 * @return type of proxies
+		 */
+		public ProxyType getProxyType(Class[] interfaces) {
+			List key = Arrays.asList(interfaces);
+
+			ProxyType type = (ProxyType) types.get(key);
+			if (type == null) {
+				synchronized (this) {
+					type = (ProxyType) types.get(key);
+					if (type == null) {
+						try {
+							type = defineProxyType(interfaces);
+						} catch (Throwable ex) {
+							throw new Error(ex);
+						}
+						types.put(key, type);
+					}
+				}
+			}
+			return type;
+		}
+
+		/**
+		 * Define a new type of proxies.
+		 * 
+		 * @param interfaces
+		 *            interfaces to implement
+		 * @return type of proxies
+		 */
+		private ProxyType defineProxyType(Class[] interfaces) throws Throwable {
+			List methods = new ArrayList();
+			List owners = new ArrayList();
+			Map signatures = new HashMap();
+			for (int i = 0; i < interfaces.length; i++) {
+				Method[] candidates = interfaces[i].getMethods();
+				for (int c = 0; c < candidates.length; c++) {
+					Method candidate = candidates[c];
+					if (Modifier.isStatic(candidate.getModifiers())
+							|| isObjectMethod(candidate)) {
+						continue;
+					}
+
+					String signature = candidate.getName()
+							+ HiddenProxyGenerator.getDescriptor(candidate);
+					if (signatures.put(signature, candidate) == null) {
+						methods.add(candidate);
+						owners.add(interfaces[i]);
+					}
+				}
+			}
+
+			Lookup lookup = getLookup();
+			String name = getPackagePrefix(lookup.lookupClass())
+					+ "$SpinProxy";
+
+			byte[] bytes = HiddenProxyGenerator.generateProxy(name,
+					interfaces, (Method[]) methods.toArray(new Method[methods
+							.size()]), (Class[]) owners
+							.toArray(new Class[owners.size()]));
+
+			Lookup hidden = (Lookup) invoke(defineHiddenClass, lookup,
+					new Object[] { bytes, Boolean.TRUE, noOptions });
+
+			return new ProxyType(hidden.lookupClass(), (Method[]) methods
+					.toArray(new Method[methods.size()]));
+		}
+
+		/**
+		 * Get a full privileged lookup in the package of this host, defining
+		 * an anchor class if necessary.
+		 * 
+		 * @return lookup
+		 */
+		private Lookup getLookup() throws Throwable {
+			if (lookup == null) {
+				if (clazz == HiddenProxyFactory.class) {
+					lookup = MethodHandles.lookup();
+				} else {
+					lookup = (Lookup) invoke(privateLookupIn, null,
+							new Object[] { clazz, MethodHandles.lookup() });
+
+					int full = Lookup.PRIVATE | MODULE;
+					if ((lookup.lookupModes() & full) != full) {
+						Class anchor = defineAnchor(lookup);
+
+						Lookup anchorLookup = (Lookup) invoke(privateLookupIn,
+								null, new Object[] { anchor,
+										MethodHandles.lookup() });
+						MethodHandle handle = anchorLookup.findStatic(anchor,
+								"lookup", MethodType.methodType(Lookup.class));
+						lookup = (Lookup) handle
+								.invokeWithArguments(new Object[0]);
+					}
+				}
+			}
+			return lookup;
+		}
+
+		/**
+		 * Define the anchor class in the package of the given lookup, unless
+		 * it is already defined.
+		 * 
+		 * @param lookup
+		 *            lookup with package access
+		 * @return anchor class
+		 */
+		private Class defineAnchor(Lookup lookup) throws Throwable {
+			String name = getPackagePrefix(clazz) + "$SpinAnchor";
+			try {
+				return Class.forName(name.replace('/', '.'), false, clazz
+						.getClassLoader());
+			} catch (ClassNotFoundException notYetDefined) {
+				return (Class) invoke(defineClass, lookup,
+						new Object[] { HiddenProxyGenerator
+								.generateAnchor(name) });
+			}
+		}
+
+		/**
+		 * Get the prefix of internal names in the package of the given class.
+		 * 
+		 * @param clazz
+		 *            class
+		 * @return prefix
+		 */
+		private String getPackagePrefix(Class clazz) {
+			String name = HiddenProxyGenerator.getInternalName(clazz);
+			return name.substring(0, name.lastIndexOf('/') + 1);
+		}
+
+		/**
+		 * Is the given method one of the methods of <code>Object</code>
+		 * handled by {@link HiddenProxy} itself.
+		 * 
+		 * @param method
+		 *            method to test
+		 * @return <code>true</code> if method of object
+		 */
+		private boolean isObjectMethod(Method method) {
+			String name = method.getName();
+			Class[] parameters = method.getParameterTypes();
+			if (parameters.length == 0) {
+				return "hashCode".equals(name) || "toString".equals(name);
+			} else if (parameters.length == 1) {
+				return "equals".equals(name) && parameters[0] == Object.class;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A type of proxies.
+	 */
+	private static class ProxyType {
+
+		private Constructor constructor;
+
+		private MethodMetadata[] methods;
+
+		/**
+		 * Create a type.
+		 * 
+		 * @param proxyClass
+		 *            class of proxies
+		 * @param methods
+		 *            methods implemented by the proxies
+		 */
+		public ProxyType(Class proxyClass, Method[] methods) {
+			try {
+				this.constructor = proxyClass.getConstructor(new Class[] {
+						HiddenProxyFactory.class, Object.class,
+						Evaluator.class, MethodMetadata[].class });
+			} catch (NoSuchMethodException ex) {
+				throw new Error(ex);
+			}
+			this.methods = new MethodMetadata[methods.length];
+			for (int m = 0; m < methods.length; m++) {
+				this.methods[m] = MethodMetadata.get(methods[m]);
+			}
+		}
+
+		/**
+		 * Create a new proxy.
+		 * 
+		 * @param factory
+		 *            factory of the proxy
+		 * @param object
+		 *            the object to invoke methods on
+		 * @param evaluator
+		 *            the evaluator of methods
+		 * @return new proxy
+		 */
+		public Object newInstance(HiddenProxyFactory factory, Object object,
+				Evaluator evaluator) {
+			try {
+				return constructor.newInstance(new Object[] { factory, object,
+						evaluator, methods });
+			} catch (Exception ex) {
+				throw new Error(ex);
+			}
+		}
+	}
+}
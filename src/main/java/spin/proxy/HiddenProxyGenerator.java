@@ -0,0 +1,651 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.proxy;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generator of class files for {@link HiddenProxyFactory}. <br>
+ * Only the few instructions needed for proxies are supported, the generated
+ * classes target Java 8 class files.
+ */
+class HiddenProxyGenerator {
+
+	private static final int VERSION = 52;
+
+	private static final int ACC_PUBLIC = 0x0001;
+
+	private static final int ACC_PRIVATE = 0x0002;
+
+	private static final int ACC_PROTECTED = 0x0004;
+
+	private static final int ACC_STATIC = 0x0008;
+
+	private static final int ACC_FINAL = 0x0010;
+
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final String SUPER = "spin/proxy/HiddenProxy";
+
+	private static final String CONSTRUCTOR = "(Lspin/proxy/HiddenProxyFactory;Ljava/lang/Object;Lspin/Evaluator;[Lspin/MethodMetadata;)V";
+
+	private static final String EVALUATE = "(I[Ljava/lang/Object;)Ljava/lang/Object;";
+
+	private static final String DISPATCH = "(ILjava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+
+	private Bytes pool = new Bytes();
+
+	private int poolCount = 1;
+
+	private Map entries = new HashMap();
+
+	private Bytes methods = new Bytes();
+
+	private int methodCount;
+
+	/**
+	 * Generate a proxy class.
+	 * 
+	 * @param name
+	 *            internal name of the class
+	 * @param interfaces
+	 *            interfaces to implement
+	 * @param methods
+	 *            methods to implement
+	 * @param owners
+	 *            the interfaces to dispatch each method to
+	 * @return class file
+	 */
+	public static byte[] generateProxy(String name, Class[] interfaces,
+			Method[] methods, Class[] owners) {
+		HiddenProxyGenerator generator = new HiddenProxyGenerator();
+
+		generator.addConstructor();
+		for (int m = 0; m < methods.length; m++) {
+			generator.addMethod(m, methods[m]);
+		}
+		generator.addDispatch(methods, owners);
+
+		String[] names = new String[interfaces.length];
+		for (int i = 0; i < interfaces.length; i++) {
+			names[i] = getInternalName(interfaces[i]);
+		}
+		return generator.toByteArray(ACC_PUBLIC | ACC_FINAL | ACC_SUPER,
+				name, SUPER, names);
+	}
+
+	/**
+	 * Generate an anchor class, providing a full privileged lookup in its
+	 * package by a private static method <code>lookup()</code>.
+	 * 
+	 * @param name
+	 *            internal name of the class
+	 * @return class file
+	 */
+	public static byte[] generateAnchor(String name) {
+		HiddenProxyGenerator generator = new HiddenProxyGenerator();
+
+		Bytes code = new Bytes();
+		code.u1(0xb8); // invokestatic
+		code.u2(generator.methodRef("java/lang/invoke/MethodHandles",
+				"lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;", false));
+		code.u1(0xb0); // areturn
+		generator.addMethod(ACC_PRIVATE | ACC_STATIC, "lookup",
+				"()Ljava/lang/invoke/MethodHandles$Lookup;", 1, 0, code, null);
+
+		return generator.toByteArray(ACC_FINAL | ACC_SUPER, name,
+				"java/lang/Object", new String[0]);
+	}
+
+	/**
+	 * Add the constructor passing all arguments to the super constructor.
+	 */
+	private void addConstructor() {
+		Bytes code = new Bytes();
+		code.u1(0x2a); // aload_0
+		code.u1(0x2b); // aload_1
+		code.u1(0x2c); // aload_2
+		code.u1(0x2d); // aload_3
+		code.u1(0x19); // aload
+		code.u1(4);
+		code.u1(0xb7); // invokespecial
+		code.u2(methodRef(SUPER, "<init>", CONSTRUCTOR, false));
+		code.u1(0xb1); // return
+
+		addMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR, 5, 5, code, null);
+	}
+
+	/**
+	 * Add a method evaluating the invocation by the proxy.
+	 * 
+	 * @param index
+	 *            index of the method
+	 * @param method
+	 *            method to implement
+	 */
+	private void addMethod(int index, Method method) {
+		Class[] parameters = method.getParameterTypes();
+
+		Bytes code = new Bytes();
+		code.u1(0x2a); // aload_0
+		pushInt(code, index);
+		if (parameters.length == 0) {
+			code.u1(0x01); // aconst_null
+		} else {
+			pushInt(code, parameters.length);
+			code.u1(0xbd); // anewarray
+			code.u2(classRef("java/lang/Object"));
+			int slot = 1;
+			for (int p = 0; p < parameters.length; p++) {
+				code.u1(0x59); // dup
+				pushInt(code, p);
+				load(code, parameters[p], slot);
+				box(code, parameters[p]);
+				code.u1(0x53); // aastore
+				slot += getSize(parameters[p]);
+			}
+		}
+		code.u1(0xb6); // invokevirtual
+		code.u2(methodRef(SUPER, "evaluate", EVALUATE, false));
+
+		Class returnType = method.getReturnType();
+		if (returnType == Void.TYPE) {
+			code.u1(0x57); // pop
+			code.u1(0xb1); // return
+		} else {
+			unbox(code, returnType);
+			code.u1(getReturnOpcode(returnType));
+		}
+
+		addMethod(ACC_PUBLIC | ACC_FINAL, method.getName(),
+				getDescriptor(method), 7, 1 + getSize(parameters), code, null);
+	}
+
+	/**
+	 * Add the method dispatching invocations directly to the proxied object
+	 * with a <code>tableswitch</code> on the index of the method.
+	 * 
+	 * @param methods
+	 *            methods to dispatch
+	 * @param owners
+	 *            interfaces to dispatch methods to
+	 */
+	private void addDispatch(Method[] methods, Class[] owners) {
+		Bytes code = new Bytes();
+		Bytes frames = null;
+
+		int maxStack = 2;
+		int[] targets = new int[methods.length];
+		int table = 0;
+		if (methods.length > 0) {
+			code.u1(0x1b); // iload_1
+			table = code.length;
+			code.u1(0xaa); // tableswitch
+			while (code.length % 4 != 0) {
+				code.u1(0);
+			}
+			code.u4(0);
+			code.u4(0);
+			code.u4(methods.length - 1);
+			for (int m = 0; m < methods.length; m++) {
+				code.u4(0);
+			}
+
+			for (int m = 0; m < methods.length; m++) {
+				targets[m] = code.length;
+
+				Method method = methods[m];
+				Class[] parameters = method.getParameterTypes();
+				String owner = getInternalName(owners[m]);
+
+				code.u1(0x2c); // aload_2
+				code.u1(0xc0); // checkcast
+				code.u2(classRef(owner));
+				for (int p = 0; p < parameters.length; p++) {
+					code.u1(0x2d); // aload_3
+					pushInt(code, p);
+					code.u1(0x32); // aaload
+					unbox(code, parameters[p]);
+				}
+				code.u1(0xb9); // invokeinterface
+				code.u2(methodRef(owner, method.getName(),
+						getDescriptor(method), true));
+				code.u1(1 + getSize(parameters));
+				code.u1(0);
+
+				Class returnType = method.getReturnType();
+				if (returnType == Void.TYPE) {
+					code.u1(0x01); // aconst_null
+				} else {
+					box(code, returnType);
+				}
+				code.u1(0xb0); // areturn
+
+				maxStack = Math.max(maxStack, 3 + getSize(parameters));
+			}
+		}
+
+		int fallback = code.length;
+		code.u1(0xbb); // new
+		code.u2(classRef("java/lang/IllegalArgumentException"));
+		code.u1(0x59); // dup
+		code.u1(0xb7); // invokespecial
+		code.u2(methodRef("java/lang/IllegalArgumentException", "<init>",
+				"()V", false));
+		code.u1(0xbf); // athrow
+
+		if (methods.length > 0) {
+			int position = table + 1;
+			while (position % 4 != 0) {
+				position++;
+			}
+			code.patch(position, fallback - table);
+			for (int m = 0; m < methods.length; m++) {
+				code.patch(position + 12 + m * 4, targets[m] - table);
+			}
+
+			// all targets share the initial frame, each one is reached from
+			// the switch only
+			frames = new Bytes();
+			frames.u2(methods.length + 1);
+			int previous = -1;
+			for (int m = 0; m <= methods.length; m++) {
+				int target = (m < methods.length) ? targets[m] : fallback;
+				frames.u1(251); // same_frame_extended
+				frames.u2(target - previous - 1);
+				previous = target;
+			}
+		}
+
+		addMethod(ACC_PROTECTED, "dispatch", DISPATCH, maxStack, 4, code,
+				frames);
+	}
+
+	/**
+	 * Add a method.
+	 * 
+	 * @param access
+	 *            access flags
+	 * @param name
+	 *            name
+	 * @param descriptor
+	 *            descriptor
+	 * @param maxStack
+	 *            maximum size of stack
+	 * @param maxLocals
+	 *            maximum number of locals
+	 * @param code
+	 *            the code
+	 * @param frames
+	 *            the stack map frames, may be <code>null</code>
+	 */
+	private void addMethod(int access, String name, String descriptor,
+			int maxStack, int maxLocals, Bytes code, Bytes frames) {
+		methodCount++;
+
+		methods.u2(access);
+		methods.u2(utf8(name));
+		methods.u2(utf8(descriptor));
+		methods.u2(1);
+
+		methods.u2(utf8("Code"));
+		int framesLength = (frames == null) ? 0 : 6 + frames.length;
+		methods.u4(12 + code.length + framesLength);
+		methods.u2(maxStack);
+		methods.u2(maxLocals);
+		methods.u4(code.length);
+		methods.bytes(code);
+		methods.u2(0);
+		if (frames == null) {
+			methods.u2(0);
+		} else {
+			methods.u2(1);
+			methods.u2(utf8("StackMapTable"));
+			methods.u4(frames.length);
+			methods.bytes(frames);
+		}
+	}
+
+	/**
+	 * Assemble the class file.
+	 * 
+	 * @param access
+	 *            access flags
+	 * @param name
+	 *            internal name of the class
+	 * @param superName
+	 *            internal name of the super class
+	 * @param interfaces
+	 *            internal names of the interfaces
+	 * @return class file
+	 */
+	private byte[] toByteArray(int access, String name, String superName,
+			String[] interfaces) {
+		int thisClass = classRef(name);
+		int superClass = classRef(superName);
+		int[] interfaceClasses = new int[interfaces.length];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaceClasses[i] = classRef(interfaces[i]);
+		}
+
+		Bytes bytes = new Bytes();
+		bytes.u4(0xcafebabe);
+		bytes.u2(0);
+		bytes.u2(VERSION);
+		bytes.u2(poolCount);
+		bytes.bytes(pool);
+		bytes.u2(access);
+		bytes.u2(thisClass);
+		bytes.u2(superClass);
+		bytes.u2(interfaceClasses.length);
+		for (int i = 0; i < interfaceClasses.length; i++) {
+			bytes.u2(interfaceClasses[i]);
+		}
+		bytes.u2(0);
+		bytes.u2(methodCount);
+		bytes.bytes(methods);
+		bytes.u2(0);
+
+		byte[] result = new byte[bytes.length];
+		System.arraycopy(bytes.data, 0, result, 0, bytes.length);
+		return result;
+	}
+
+	private void pushInt(Bytes code, int value) {
+		if (value >= -1 && value <= 5) {
+			code.u1(0x03 + value); // iconst_<n>
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			code.u1(0x10); // bipush
+			code.u1(value);
+		} else {
+			code.u1(0x11); // sipush
+			code.u2(value);
+		}
+	}
+
+	private void load(Bytes code, Class type, int slot) {
+		int opcode;
+		if (type == Long.TYPE) {
+			opcode = 0x16; // lload
+		} else if (type == Float.TYPE) {
+			opcode = 0x17; // fload
+		} else if (type == Double.TYPE) {
+			opcode = 0x18; // dload
+		} else if (type.isPrimitive()) {
+			opcode = 0x15; // iload
+		} else {
+			opcode = 0x19; // aload
+		}
+		code.u1(opcode);
+		code.u1(slot);
+	}
+
+	private int getReturnOpcode(Class type) {
+		if (type == Long.TYPE) {
+			return 0xad; // lreturn
+		} else if (type == Float.TYPE) {
+			return 0xae; // freturn
+		} else if (type == Double.TYPE) {
+			return 0xaf; // dreturn
+		} else if (type.isPrimitive()) {
+			return 0xac; // ireturn
+		} else {
+			return 0xb0; // areturn
+		}
+	}
+
+	/**
+	 * Box a primitive value on top of the stack.
+	 */
+	private void box(Bytes code, Class type) {
+		if (type.isPrimitive()) {
+			String wrapper = getInternalName(getWrapper(type));
+			code.u1(0xb8); // invokestatic
+			code.u2(methodRef(wrapper, "valueOf", "("
+					+ getDescriptor(type) + ")L" + wrapper + ";", false));
+		}
+	}
+
+	/**
+	 * Unbox a primitive value respectively cast a reference on top of the
+	 * stack.
+	 */
+	private void unbox(Bytes code, Class type) {
+		if (type.isPrimitive()) {
+			String wrapper = getInternalName(getWrapper(type));
+			code.u1(0xc0); // checkcast
+			code.u2(classRef(wrapper));
+			code.u1(0xb6); // invokevirtual
+			code.u2(methodRef(wrapper, type.getName() + "Value", "()"
+					+ getDescriptor(type), false));
+		} else if (type != Object.class) {
+			code.u1(0xc0); // checkcast
+			code.u2(classRef(getInternalName(type)));
+		}
+	}
+
+	private int utf8(String value) {
+		Object key = "U" + value;
+		Integer index = (Integer) entries.get(key);
+		if (index == null) {
+			pool.u1(1);
+			pool.utf(value);
+			index = entry(key);
+		}
+		return index.intValue();
+	}
+
+	private int classRef(String name) {
+		Object key = "C" + name;
+		Integer index = (Integer) entries.get(key);
+		if (index == null) {
+			int nameIndex = utf8(name);
+			pool.u1(7);
+			pool.u2(nameIndex);
+			index = entry(key);
+		}
+		return index.intValue();
+	}
+
+	private int methodRef(String owner, String name, String descriptor,
+			boolean isInterface) {
+		Object key = (isInterface ? "I" : "M") + owner + "." + name
+				+ descriptor;
+		Integer index = (Integer) entries.get(key);
+		if (index == null) {
+			int ownerIndex = classRef(owner);
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+
+			Object nameAndTypeKey = "N" + name + descriptor;
+			Integer nameAndType = (Integer) entries.get(nameAndTypeKey);
+			if (nameAndType == null) {
+				pool.u1(12);
+				pool.u2(nameIndex);
+				pool.u2(descriptorIndex);
+				nameAndType = entry(nameAndTypeKey);
+			}
+
+			pool.u1(isInterface ? 11 : 10);
+			pool.u2(ownerIndex);
+			pool.u2(nameAndType.intValue());
+			index = entry(key);
+		}
+		return index.intValue();
+	}
+
+	private Integer entry(Object key) {
+		Integer index = Integer.valueOf(poolCount++);
+		entries.put(key, index);
+		return index;
+	}
+
+	private static int getSize(Class type) {
+		return (type == Long.TYPE || type == Double.TYPE) ? 2 : 1;
+	}
+
+	private static int getSize(Class[] types) {
+		int size = 0;
+		for (int t = 0; t < types.length; t++) {
+			size += getSize(types[t]);
+		}
+		return size;
+	}
+
+	private static Class getWrapper(Class type) {
+		if (type == Boolean.TYPE) {
+			return Boolean.class;
+		} else if (type == Byte.TYPE) {
+			return Byte.class;
+		} else if (type == Character.TYPE) {
+			return Character.class;
+		} else if (type == Short.TYPE) {
+			return Short.class;
+		} else if (type == Integer.TYPE) {
+			return Integer.class;
+		} else if (type == Long.TYPE) {
+			return Long.class;
+		} else if (type == Float.TYPE) {
+			return Float.class;
+		} else {
+			return Double.class;
+		}
+	}
+
+	static String getInternalName(Class type) {
+		return type.getName().replace('.', '/');
+	}
+
+	static String getDescriptor(Method method) {
+		StringBuffer descriptor = new StringBuffer();
+		descriptor.append('(');
+		Class[] parameters = method.getParameterTypes();
+		for (int p = 0; p < parameters.length; p++) {
+			descriptor.append(getDescriptor(parameters[p]));
+		}
+		descriptor.append(')');
+		descriptor.append(getDescriptor(method.getReturnType()));
+		return descriptor.toString();
+	}
+
+	private static String getDescriptor(Class type) {
+		if (type.isPrimitive()) {
+			if (type == Boolean.TYPE) {
+				return "Z";
+			} else if (type == Byte.TYPE) {
+				return "B";
+			} else if (type == Character.TYPE) {
+				return "C";
+			} else if (type == Short.TYPE) {
+				return "S";
+			} else if (type == Integer.TYPE) {
+				return "I";
+			} else if (type == Long.TYPE) {
+				return "J";
+			} else if (type == Float.TYPE) {
+				return "F";
+			} else if (type == Double.TYPE) {
+				return "D";
+			} else {
+				return "V";
+			}
+		} else if (type.isArray()) {
+			return getInternalName(type);
+		} else {
+			return "L" + getInternalName(type) + ";";
+		}
+	}
+
+	/**
+	 * A growable array of bytes.
+	 */
+	private static class Bytes {
+
+		private byte[] data = new byte[256];
+
+		private int length;
+
+		public void u1(int value) {
+			ensure(1);
+			data[length++] = (byte) value;
+		}
+
+		public void u2(int value) {
+			ensure(2);
+			data[length++] = (byte) (value >>> 8);
+			data[length++] = (byte) value;
+		}
+
+		public void u4(int value) {
+			ensure(4);
+			data[length++] = (byte) (value >>> 24);
+			data[length++] = (byte) (value >>> 16);
+			data[length++] = (byte) (value >>> 8);
+			data[length++] = (byte) value;
+		}
+
+		public void patch(int position, int value) {
+			data[position] = (byte) (value >>> 24);
+			data[position + 1] = (byte) (value >>> 16);
+			data[position + 2] = (byte) (value >>> 8);
+			data[position + 3] = (byte) value;
+		}
+
+		public void bytes(Bytes bytes) {
+			ensure(bytes.length);
+			System.arraycopy(bytes.data, 0, data, length, bytes.length);
+			length += bytes.length;
+		}
+
+		/**
+		 * Write a string in modified UTF-8.
+		 */
+		public void utf(String value) {
+			int start = length;
+			u2(0);
+			for (int c = 0; c < value.length(); c++) {
+				char character = value.charAt(c);
+				if (character >= 0x0001 && character <= 0x007f) {
+					u1(character);
+				} else if (character <= 0x07ff) {
+					u1(0xc0 | (character >> 6));
+					u1(0x80 | (character & 0x3f));
+				} else {
+					u1(0xe0 | (character >> 12));
+					u1(0x80 | ((character >> 6) & 0x3f));
+					u1(0x80 | (character & 0x3f));
+				}
+			}
+			int size = length - start - 2;
+			data[start] = (byte) (size >>> 8);
+			data[start + 1] = (byte) size;
+		}
+
+		private void ensure(int size) {
+			if (length + size > data.length) {
+				byte[] grown = new byte[Math.max(data.length * 2, length
+						+ size)];
+				System.arraycopy(data, 0, grown, 0, length);
+				data = grown;
+			}
+		}
+	}
+}
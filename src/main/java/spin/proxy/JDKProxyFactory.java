@@ -18,6 +18,7 @@
  */
 package spin.proxy;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -27,6 +28,7 @@ import java.util.Set;
 
 import spin.Evaluator;
 import spin.Invocation;
+import spin.MethodMetadata;
 import spin.ProxyFactory;
 
 /**
@@ -34,17 +36,133 @@ import spin.ProxyFactory;
  */
 public class JDKProxyFactory extends ProxyFactory {
 
+	/**
+	 * Handler of the instance created to look up a proxy class, never invoked.
+	 */
+	private static final InvocationHandler unusedHandler = new InvocationHandler() {
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			throw new IllegalStateException();
+		}
+	};
+
+	/**
+	 * The proxy classes keyed by the class of the proxied object. <br>
+	 * A proxy class is always defined in the class loader of the proxied class,
+	 * thus the class alone identifies it. Since the values are attached to the
+	 * proxied classes, this cache does not prevent class loaders from being
+	 * garbage collected.
+	 */
+	private static final ClassValue proxyClasses = new ClassValue() {
+		protected Object computeValue(Class clazz) {
+			return new ProxyClass(getProxyConstructor(clazz));
+		}
+	};
+
+	/**
+	 * The proxy classes implementing a single interface, keyed by the
+	 * interface.
+	 */
+	private static final ClassValue interfaceProxyClasses = new ClassValue() {
+		protected Object computeValue(Class type) {
+			return new ProxyClass(getProxyConstructor(type.getClassLoader(),
+					new Class[] { type }));
+		}
+	};
+
 	/**
 	 * The created proxy will not implement non-public interfaces from different
 	 * class loaders since these yield an {@link IllegalAccessError} on
 	 * construction of a proxy.
 	 */
 	public Object createProxy(Object object, Evaluator evaluator) {
-		Class clazz = object.getClass();
+		return newInstance((ProxyClass) proxyClasses.get(object.getClass()),
+				object, evaluator);
+	}
+
+	/**
+	 * Create a proxy implementing the given interface only. <br>
+	 * The object does not have to implement the interface, the evaluator is
+	 * responsible to map invocations to the object's methods.
+	 * 
+	 * @param object
+	 *            object to create proxy for
+	 * @param type
+	 *            interface to implement
+	 * @param evaluator
+	 *            evaluator of invocations on the proxy
+	 * @return the new proxy
+	 * @see spin.Implementations
+	 */
+	public Object createProxy(Object object, Class type, Evaluator evaluator) {
+		if (!type.isInterface()) {
+			throw new IllegalArgumentException(type.getName()
+					+ " is not an interface");
+		}
+
+		return newInstance((ProxyClass) interfaceProxyClasses.get(type),
+				object, evaluator);
+	}
+
+	/**
+	 * Create a new instance of a proxy class.
+	 * 
+	 * @param proxyClass
+	 *            the proxy class
+	 * @param object
+	 *            object to create proxy for
+	 * @param evaluator
+	 *            evaluator of invocations on the proxy
+	 * @return the new proxy
+	 */
+	private Object newInstance(ProxyClass proxyClass, Object object,
+			Evaluator evaluator) {
+		try {
+			return proxyClass.constructor
+					.newInstance(new Object[] { new SpinInvocationHandler(
+							object, evaluator, proxyClass.methods) });
+		} catch (Exception ex) {
+			throw new Error(ex);
+		}
+	}
+
+	/**
+	 * Utility method to retrieve the constructor of a proxy class for all
+	 * accessible interfaces of the given class.
+	 * 
+	 * @param clazz
+	 *            class to get proxy constructor for
+	 * @return constructor taking an {@link InvocationHandler}
+	 */
+	private static Constructor getProxyConstructor(Class clazz) {
+		return getProxyConstructor(clazz.getClassLoader(),
+				getAccessibleInterfaces(clazz));
+	}
+
+	/**
+	 * Utility method to retrieve the constructor of a proxy class.
+	 * 
+	 * @param loader
+	 *            class loader to define the proxy class in
+	 * @param interfaces
+	 *            interfaces to implement
+	 * @return constructor taking an {@link InvocationHandler}
+	 */
+	private static Constructor getProxyConstructor(ClassLoader loader,
+			Class[] interfaces) {
+		// Proxy.getProxyClass() is deprecated
+		Class proxyClass = Proxy.newProxyInstance(loader, interfaces,
+				unusedHandler).getClass();
 
-		return Proxy.newProxyInstance(clazz.getClassLoader(),
-				getAccessibleInterfaces(clazz), new SpinInvocationHandler(
-						object, evaluator));
+		try {
+			Constructor constructor = proxyClass
+					.getConstructor(new Class[] { InvocationHandler.class });
+			if (!Modifier.isPublic(proxyClass.getModifiers())) {
+				constructor.setAccessible(true);
+			}
+			return constructor;
+		} catch (NoSuchMethodException ex) {
+			throw new Error(ex);
+		}
 	}
 
 	/**
@@ -55,7 +173,7 @@ public class JDKProxyFactory extends ProxyFactory {
 	 *            class to get interfaces for
 	 * @return implemented interfaces
 	 */
-	private static Class[] getAccessibleInterfaces(Class clazz) {
+	static Class[] getAccessibleInterfaces(Class clazz) {
 		ClassLoader loader = clazz.getClassLoader();
 
 		Set interfaces = new HashSet();
@@ -93,6 +211,10 @@ public class JDKProxyFactory extends ProxyFactory {
 		return (Proxy.getInvocationHandler(object) instanceof SpinInvocationHandler);
 	}
 
+	public Object getObject(Object proxy) {
+		return ((SpinInvocationHandler) Proxy.getInvocationHandler(proxy)).object;
+	}
+
 	protected boolean areProxyEqual(Object proxy1, Object proxy2) {
 
 		SpinInvocationHandler handler1 = (SpinInvocationHandler) Proxy
@@ -103,6 +225,29 @@ public class JDKProxyFactory extends ProxyFactory {
 		return handler1.object.equals(handler2.object);
 	}
 
+	/**
+	 * A proxy class.
+	 */
+	private static class ProxyClass {
+
+		private Constructor constructor;
+
+		/**
+		 * The metadata of the constant methods passed by the proxy class.
+		 */
+		private MethodMetadata.Table methods = new MethodMetadata.Table();
+
+		/**
+		 * Create a proxy class.
+		 * 
+		 * @param constructor
+		 *            constructor taking an {@link InvocationHandler}
+		 */
+		public ProxyClass(Constructor constructor) {
+			this.constructor = constructor;
+		}
+	}
+
 	/**
 	 * Invocation handler for the <em>Spin</em> proxy.
 	 */
@@ -112,6 +257,8 @@ public class JDKProxyFactory extends ProxyFactory {
 
 		private Evaluator evaluator;
 
+		private MethodMetadata.Table methods;
+
 		/**
 		 * Create a new handler of invocations.
 		 * 
@@ -119,10 +266,14 @@ public class JDKProxyFactory extends ProxyFactory {
 		 *            the object to invoke methods on
 		 * @param evaluator
 		 *            the evaluator of methods
+		 * @param methods
+		 *            the metadata of methods of the proxy class
 		 */
-		public SpinInvocationHandler(Object object, Evaluator evaluator) {
+		public SpinInvocationHandler(Object object, Evaluator evaluator,
+				MethodMetadata.Table methods) {
 			this.object = object;
 			this.evaluator = evaluator;
+			this.methods = methods;
 		}
 
 		/**
@@ -142,7 +293,7 @@ public class JDKProxyFactory extends ProxyFactory {
 				throws Throwable {
 
 			return evaluteInvocation(evaluator, proxy, new Invocation(
-					this.object, method, args));
+					this.object, method, args, methods));
 		}
 	}
 }
\ No newline at end of file
@@ -89,6 +89,20 @@ public abstract class AbstractProxyFactoryTest extends TestCase {
 				.equals(proxy2));
 	}
 
+	/**
+	 * Test resolution of the intercepted object.
+	 */
+	public void testGetObject() {
+
+		Runnable runnable = new RunnableBean();
+
+		Runnable proxy = (Runnable) getFactory().createProxy(runnable,
+				createEvaluator());
+
+		assertTrue(getFactory().isProxy(proxy));
+		assertSame(runnable, getFactory().getObject(proxy));
+	}
+
 	/**
 	 * Test non-equality of two proxies of different beans.
 	 * 
@@ -109,6 +123,50 @@ public abstract class AbstractProxyFactoryTest extends TestCase {
 				.equals(proxy2));
 	}
 
+	/**
+	 * Test that identity based methods of <code>Object</code> are answered
+	 * locally.
+	 */
+	public void testIdentityMethodsAreLocal() {
+
+		Runnable runnable = new RunnableBean();
+
+		Evaluator evaluator = new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				fail("evaluated " + invocation.getMethod());
+			}
+		};
+
+		Runnable proxy = (Runnable) getFactory().createProxy(runnable,
+				evaluator);
+
+		assertEquals(runnable.hashCode(), proxy.hashCode());
+		assertEquals(runnable.toString(), proxy.toString());
+	}
+
+	/**
+	 * Test that overridden methods of <code>Object</code> are evaluated.
+	 */
+	public void testOverriddenMethodsAreEvaluated() {
+
+		Runnable runnable = new ValueBean();
+
+		final int[] evaluations = new int[1];
+		Evaluator evaluator = new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				evaluations[0]++;
+				invocation.evaluate();
+			}
+		};
+
+		Runnable proxy = (Runnable) getFactory().createProxy(runnable,
+				evaluator);
+
+		assertEquals(42, proxy.hashCode());
+		assertEquals("42", proxy.toString());
+		assertEquals(2, evaluations[0]);
+	}
+
 	/**
 	 * Runnable mock.
 	 */
@@ -136,4 +194,17 @@ public abstract class AbstractProxyFactoryTest extends TestCase {
 			};
 		};
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Runnable mock overriding identity based methods.
+	 */
+	public static class ValueBean extends RunnableBean {
+		public int hashCode() {
+			return 42;
+		}
+
+		public String toString() {
+			return "42";
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import spin.proxy.GeneratedProxy;
+import spin.proxy.GeneratedProxyFactory;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of generated proxies.
+ */
+public class GeneratedProxyFactoryTest extends AbstractProxyFactoryTest {
+
+	protected ProxyFactory getFactory() {
+		return new GeneratedProxyFactoryTest_Bean_SpinProxy.Factory();
+	}
+
+	/**
+	 * Test lookup of registered factories.
+	 */
+	public void testRegistered() {
+		assertTrue(ProxyFactory.getRegisteredProxyFactory(BeanImpl.class) instanceof GeneratedProxyFactoryTest_Bean_SpinProxy.Factory);
+
+		assertNull(ProxyFactory.getRegisteredProxyFactory(RunnableBean.class));
+		assertNull(ProxyFactory.getRegisteredProxyFactory(Object.class));
+	}
+
+	/**
+	 * Test {@link Spin} picking up the registered factory.
+	 */
+	public void testSpin() {
+		Object proxy = Spin.off(new BeanImpl());
+
+		assertTrue(proxy instanceof GeneratedProxyFactoryTest_Bean_SpinProxy);
+	}
+
+	/**
+	 * Test {@link Spin} honoring an explicitly set default factory.
+	 */
+	public void testExplicitDefault() {
+		ProxyFactory factory = Spin.getDefaultProxyFactory();
+		try {
+			Spin.setDefaultProxyFactory(new JDKProxyFactory());
+
+			Object proxy = Spin.off(new BeanImpl());
+
+			assertFalse(proxy instanceof GeneratedProxyFactoryTest_Bean_SpinProxy);
+			assertTrue(Proxy.isProxyClass(proxy.getClass()));
+		} finally {
+			Spin.setDefaultProxyFactory(factory);
+		}
+
+		assertTrue(Spin.off(new BeanImpl()) instanceof GeneratedProxyFactoryTest_Bean_SpinProxy);
+	}
+
+	/**
+	 * Interface with a generated proxy.
+	 */
+	@SpinProxy
+	public static interface Bean extends Runnable {
+	}
+
+	/**
+	 * Implementation of bean.
+	 */
+	public static class BeanImpl implements Bean {
+		public void run() {
+		}
+	}
+}
+
+/**
+ * Proxy as generated by the <em>Spin</em> annotation processor for
+ * {@link GeneratedProxyFactoryTest.Bean}.
+ */
+class GeneratedProxyFactoryTest_Bean_SpinProxy extends GeneratedProxy
+		implements GeneratedProxyFactoryTest.Bean {
+
+	private static final Method m0 = getMethod(Runnable.class, "run",
+			new Class[] {});
+
+	GeneratedProxyFactoryTest_Bean_SpinProxy(GeneratedProxyFactory factory,
+			Object object, Evaluator evaluator) {
+		super(factory, object, evaluator);
+	}
+
+	public void run() {
+		try {
+			evaluate(m0, null);
+		} catch (RuntimeException ex) {
+			throw ex;
+		} catch (Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new java.lang.reflect.UndeclaredThrowableException(ex);
+		}
+	}
+
+	/**
+	 * Factory of {@link GeneratedProxyFactoryTest_Bean_SpinProxy}s.
+	 */
+	public static class Factory extends GeneratedProxyFactory {
+
+		public Object createProxy(Object object, Evaluator evaluator) {
+			return new GeneratedProxyFactoryTest_Bean_SpinProxy(this, object,
+					evaluator);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import spin.proxy.HiddenProxyFactory;
+
+/**
+ * Test of hidden class proxies - skipped if hidden classes are not available.
+ */
+public class HiddenProxyFactoryTest extends AbstractProxyFactoryTest {
+
+	protected void runTest() throws Throwable {
+		if (HiddenProxyFactory.isAvailable()) {
+			super.runTest();
+		}
+	}
+
+	protected ProxyFactory getFactory() {
+		return new HiddenProxyFactory();
+	}
+
+	/**
+	 * Test methods with different signatures.
+	 * 
+	 * @throws Exception
+	 */
+	public void testSignatures() throws Exception {
+		final int[] evaluations = new int[1];
+		Evaluator evaluator = new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				evaluations[0]++;
+				invocation.evaluate();
+			}
+		};
+
+		Signatures proxy = (Signatures) getFactory().createProxy(
+				new SignaturesBean(), evaluator);
+
+		assertEquals(3, proxy.add(1, 2));
+		assertEquals(1 + 2 + 3 + 4 + 5 + 6 + 1, proxy.sum(1l, 2d, 3f,
+				(short) 4, (byte) 5, (char) 6, true));
+		assertEquals("b", proxy.reverse(new String[] { "a", "b" })[0]);
+		assertNull(proxy.nothing());
+		proxy.check(true);
+		try {
+			proxy.check(false);
+			fail();
+		} catch (IOException expected) {
+		}
+		assertEquals(6, evaluations[0]);
+	}
+
+	/**
+	 * Test wrapping of undeclared checked exceptions.
+	 */
+	public void testUndeclaredThrowable() {
+		Evaluator evaluator = new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				invocation.setThrowable(new Exception());
+			}
+		};
+
+		Runnable proxy = (Runnable) getFactory().createProxy(
+				new RunnableBean(), evaluator);
+		try {
+			proxy.run();
+			fail();
+		} catch (UndeclaredThrowableException expected) {
+		}
+	}
+
+	/**
+	 * Test that proxies of different classes with the same interfaces share a
+	 * single proxy class.
+	 */
+	public void testProxyClassIsShared() {
+
+		Runnable proxy1 = (Runnable) getFactory().createProxy(
+				new RunnableBean(), createEvaluator());
+		Runnable proxy2 = (Runnable) getFactory().createProxy(new Runnable() {
+			public void run() {
+			}
+		}, createEvaluator());
+
+		assertSame(proxy1.getClass(), proxy2.getClass());
+	}
+
+	/**
+	 * Test a non-public interface defined in another class loader, which
+	 * requires an anchor class in its package.
+	 * 
+	 * @throws Exception
+	 */
+	public void testNonPublicInterfaceOfOtherClassLoader() throws Exception {
+		ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+			protected synchronized Class loadClass(String name,
+					boolean resolve) throws ClassNotFoundException {
+				if (name.equals(Signatures.class.getName())
+						|| name.equals(SignaturesBean.class.getName())) {
+					Class clazz = findLoadedClass(name);
+					if (clazz == null) {
+						byte[] bytes = read(name);
+						clazz = defineClass(name, bytes, 0, bytes.length);
+					}
+					return clazz;
+				}
+				return super.loadClass(name, resolve);
+			}
+		};
+		Class signatures = loader.loadClass(Signatures.class.getName());
+		Object bean = loader.loadClass(SignaturesBean.class.getName())
+				.getDeclaredConstructor().newInstance();
+
+		Object proxy = getFactory().createProxy(bean, createEvaluator());
+		assertTrue(signatures.isInstance(proxy));
+
+		Method add = signatures.getMethod("add", new Class[] { Integer.TYPE,
+				Integer.TYPE });
+		add.setAccessible(true);
+		assertEquals(Integer.valueOf(3), add.invoke(proxy, new Object[] {
+				Integer.valueOf(1), Integer.valueOf(2) }));
+	}
+
+	private static byte[] read(String name) {
+		try {
+			InputStream input = HiddenProxyFactoryTest.class
+					.getResourceAsStream("/" + name.replace('.', '/')
+							+ ".class");
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int count;
+			while ((count = input.read(buffer)) != -1) {
+				output.write(buffer, 0, count);
+			}
+			input.close();
+			return output.toByteArray();
+		} catch (IOException ex) {
+			throw new Error(ex);
+		}
+	}
+
+	/**
+	 * Non-public interface with different signatures.
+	 */
+	static interface Signatures {
+		public int add(int a, int b);
+
+		public long sum(long l, double d, float f, short s, byte b, char c,
+				boolean z);
+
+		public String[] reverse(String[] strings);
+
+		public Object nothing();
+
+		public void check(boolean valid) throws IOException;
+	}
+
+	/**
+	 * Implementation of signatures.
+	 */
+	public static class SignaturesBean implements Signatures {
+		public int add(int a, int b) {
+			return a + b;
+		}
+
+		public long sum(long l, double d, float f, short s, byte b, char c,
+				boolean z) {
+			return l + (long) d + (long) f + s + b + c + (z ? 1 : 0);
+		}
+
+		public String[] reverse(String[] strings) {
+			return new String[] { strings[1], strings[0] };
+		}
+
+		public Object nothing() {
+			return null;
+		}
+
+		public void check(boolean valid) throws IOException {
+			if (!valid) {
+				throw new IOException();
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.reflect.InvocationTargetException;
+
+import spin.proxy.CGLibProxyFactory;
+import spin.proxy.HiddenProxyFactory;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Benchmark of the per-call overhead of proxies evaluating invocations inline,
+ * comparing {@link Invoker}s with plain reflection. The handle evaluator uses
+ * a method handle without looking it up, showing the cost of the handle
+ * itself. <br>
+ * Run each combination in a separate JVM, so call sites aren't polluted by
+ * profiles of other combinations:
+ * 
+ * <pre>
+ * java -cp ... spin.InvokerBenchmark (jdk|cglib|hidden) (reflection|invocation|handles|handle) [calls]
+ * </pre>
+ */
+public class InvokerBenchmark {
+
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) {
+		ProxyFactory factory;
+		if ("cglib".equals(args[0])) {
+			factory = new CGLibProxyFactory();
+		} else if ("hidden".equals(args[0])) {
+			factory = new HiddenProxyFactory();
+		} else {
+			factory = new JDKProxyFactory();
+		}
+
+		Evaluator evaluator;
+		if ("reflection".equals(args[1])) {
+			evaluator = new ReflectiveEvaluator();
+		} else if ("handle".equals(args[1])) {
+			evaluator = new HandleEvaluator();
+		} else {
+			Invoker.setDefaultHandles("handles".equals(args[1]));
+			evaluator = new InvokerEvaluator();
+		}
+
+		int calls = args.length > 2 ? Integer.parseInt(args[2]) : 10000000;
+
+		Counter counter = (Counter) factory.createProxy(new CounterBean(),
+				evaluator);
+
+		long best = Long.MAX_VALUE;
+		for (int r = 0; r < ROUNDS; r++) {
+			best = Math.min(best, run(counter, calls));
+		}
+
+		System.out.println(args[0] + " " + args[1] + ": "
+				+ ((double) best / calls) + " ns/call");
+	}
+
+	private static long run(Counter counter, int calls) {
+		long start = System.nanoTime();
+		int sum = 0;
+		for (int c = 0; c < calls; c++) {
+			sum += counter.increment(c);
+		}
+		long elapsed = System.nanoTime() - start;
+
+		if (sum == 42) {
+			System.out.println();
+		}
+
+		return elapsed;
+	}
+
+	public static interface Counter {
+		public int increment(int delta);
+	}
+
+	public static class CounterBean implements Counter {
+		private int count;
+
+		public int increment(int delta) {
+			count += delta;
+
+			return count;
+		}
+	}
+
+	/**
+	 * Evaluator with plain reflection.
+	 */
+	private static class ReflectiveEvaluator extends Evaluator {
+		public void evaluate(Invocation invocation) throws Throwable {
+			try {
+				invocation.setResult(invocation.getMethod().invoke(
+						invocation.getObject(), invocation.getArguments()));
+			} catch (InvocationTargetException ex) {
+				invocation.setThrowable(ex.getTargetException());
+			}
+		}
+	}
+
+	/**
+	 * Evaluator with a fixed handle invoker.
+	 */
+	private static class HandleEvaluator extends Evaluator {
+		private Invoker invoker;
+
+		public void evaluate(Invocation invocation) throws Throwable {
+			if (invoker == null) {
+				invoker = Invoker.createHandle(invocation.getMethod());
+			}
+			invocation.setResult(invoker.invoke(invocation.getObject(),
+					invocation.getArguments()));
+		}
+	}
+
+	/**
+	 * Evaluator with invokers.
+	 */
+	private static class InvokerEvaluator extends Evaluator {
+		public void evaluate(Invocation invocation) throws Throwable {
+			invocation.evaluate();
+		}
+	}
+}
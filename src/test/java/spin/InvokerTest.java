@@ -0,0 +1,163 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of invokers.
+ */
+public class InvokerTest extends TestCase {
+
+	public void testPrimitives() throws Throwable {
+		Method method = Bean.class.getMethod("add", new Class[] { Integer.TYPE,
+				Long.TYPE });
+
+		Invoker[] invokers = createInvokers(method);
+		for (int i = 0; i < invokers.length; i++) {
+			Object result = invokers[i].invoke(new BeanImpl(), new Object[] {
+					Integer.valueOf(1), Long.valueOf(2) });
+
+			assertEquals(Long.valueOf(3), result);
+		}
+	}
+
+	public void testVoid() throws Throwable {
+		Method method = Bean.class.getMethod("run", new Class[0]);
+
+		Invoker[] invokers = createInvokers(method);
+		for (int i = 0; i < invokers.length; i++) {
+			BeanImpl bean = new BeanImpl();
+
+			assertNull(invokers[i].invoke(bean, null));
+			assertTrue(bean.run);
+		}
+	}
+
+	public void testManyParameters() throws Throwable {
+		Method method = Bean.class.getMethod("concat", new Class[] {
+				String.class, String.class, String.class, String.class });
+
+		Invoker[] invokers = createInvokers(method);
+		for (int i = 0; i < invokers.length; i++) {
+			Object result = invokers[i].invoke(new BeanImpl(), new Object[] {
+					"a", "b", "c", "d" });
+
+			assertEquals("abcd", result);
+		}
+	}
+
+	public void testThrowable() throws Throwable {
+		Method method = Bean.class.getMethod("fail", new Class[0]);
+
+		Invoker[] invokers = createInvokers(method);
+		for (int i = 0; i < invokers.length; i++) {
+			try {
+				invokers[i].invoke(new BeanImpl(), new Object[0]);
+				fail();
+			} catch (IOException expected) {
+			}
+		}
+	}
+
+	public void testNonPublicClass() throws Throwable {
+		Method method = BeanImpl.class.getMethod("run", new Class[0]);
+
+		BeanImpl bean = new BeanImpl();
+
+		Invoker.createHandle(method).invoke(bean, null);
+		assertTrue(bean.run);
+	}
+
+	public void testCached() throws Throwable {
+		Method method = Bean.class.getMethod("run", new Class[0]);
+
+		boolean handles = Invoker.getDefaultHandles();
+		Invoker.setDefaultHandles(true);
+		try {
+			assertSame(Invoker.get(method), Invoker.get(method));
+		} finally {
+			Invoker.setDefaultHandles(handles);
+		}
+	}
+
+	public void testCachedReflective() throws Throwable {
+		Method method = Bean.class.getMethod("run", new Class[0]);
+
+		boolean handles = Invoker.getDefaultHandles();
+		Invoker.setDefaultHandles(false);
+		try {
+			Invoker invoker = Invoker.get(method);
+			assertSame(invoker, Invoker.get(method));
+
+			// a copy might differ in accessibility
+			Method copy = Bean.class.getMethod("run", new Class[0]);
+			assertNotSame(invoker, Invoker.get(copy));
+		} finally {
+			Invoker.setDefaultHandles(handles);
+		}
+	}
+
+	public void testEvaluate() throws Throwable {
+		Method method = Bean.class.getMethod("fail", new Class[0]);
+
+		Invocation invocation = new Invocation(new BeanImpl(), method, null);
+		invocation.evaluate();
+
+		assertTrue(invocation.getThrowable() instanceof IOException);
+	}
+
+	private Invoker[] createInvokers(Method method) {
+		return new Invoker[] { Invoker.createHandle(method),
+				Invoker.createReflective(method) };
+	}
+
+	public static interface Bean {
+		public long add(int a, long b);
+
+		public String concat(String a, String b, String c, String d);
+
+		public void run();
+
+		public void fail() throws IOException;
+	}
+
+	private static class BeanImpl implements Bean {
+		private boolean run;
+
+		public long add(int a, long b) {
+			return a + b;
+		}
+
+		public String concat(String a, String b, String c, String d) {
+			return a + b + c + d;
+		}
+
+		public void run() {
+			run = true;
+		}
+
+		public void fail() throws IOException {
+			throw new IOException();
+		}
+	}
+}
@@ -45,4 +45,17 @@ public class JDKProxyFactoryTest extends AbstractProxyFactoryTest {
 
 		}, createEvaluator());
 	}
+
+	/**
+	 * Test that proxies of the same class share a single proxy class.
+	 */
+	public void testProxyClassIsShared() {
+
+		Runnable proxy1 = (Runnable) getFactory().createProxy(
+				new RunnableBean(), createEvaluator());
+		Runnable proxy2 = (Runnable) getFactory().createProxy(
+				new RunnableBean(), createEvaluator());
+
+		assertSame(proxy1.getClass(), proxy2.getClass());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of {@link MethodMetadata}.
+ */
+public class MethodMetadataTest extends TestCase {
+
+	public void testClassification() throws Exception {
+		MethodMetadata equals = MethodMetadata.get(Object.class.getMethod(
+				"equals", new Class[] { Object.class }));
+		assertTrue(equals.isEquals());
+		assertTrue(equals.isLocal(new Object()));
+
+		MethodMetadata hashCode = MethodMetadata.get(Object.class.getMethod(
+				"hashCode", new Class[0]));
+		assertTrue(hashCode.isHashCode());
+		assertTrue(hashCode.isLocal(new Object()));
+		assertFalse(hashCode.isLocal("string"));
+
+		MethodMetadata toString = MethodMetadata.get(Object.class.getMethod(
+				"toString", new Class[0]));
+		assertTrue(toString.isToString());
+		assertTrue(toString.isLocal(new Object()));
+		assertFalse(toString.isLocal("string"));
+
+		MethodMetadata run = MethodMetadata.get(Runnable.class.getMethod(
+				"run", new Class[0]));
+		assertTrue(run.isVoid());
+		assertFalse(run.isLocal(new Object()));
+
+		MethodMetadata compareTo = MethodMetadata.get(Comparable.class
+				.getMethod("compareTo", new Class[] { Object.class }));
+		assertFalse(compareTo.isVoid());
+		assertFalse(compareTo.isLocal(new Object()));
+	}
+
+	public void testCopies() throws Exception {
+		Method method = Runnable.class.getMethod("run", new Class[0]);
+
+		MethodMetadata metadata = MethodMetadata.get(method);
+		assertEquals(method, metadata.getMethod());
+		assertSame(metadata, MethodMetadata.get(method));
+
+		for (int c = 0; c < 16; c++) {
+			Method copy = Runnable.class.getMethod("run", new Class[0]);
+			assertNotSame(method, copy);
+
+			assertSame(metadata, MethodMetadata.get(copy));
+		}
+	}
+
+	public void testInvocation() throws Exception {
+		Method method = Runnable.class.getMethod("run", new Class[0]);
+
+		Invocation invocation = new Invocation(null, method, null);
+		assertSame(MethodMetadata.get(method), invocation.getMetadata());
+
+		Method other = Object.class.getMethod("toString", new Class[0]);
+		invocation.setMethod(other);
+		assertSame(MethodMetadata.get(other), invocation.getMetadata());
+	}
+
+	public void testAnnotations() throws Exception {
+		MethodMetadata deprecated = MethodMetadata.get(Bean.class.getMethod(
+				"deprecated", new Class[0]));
+		assertNotNull(deprecated.getAnnotation(Deprecated.class));
+
+		MethodMetadata inherited = MethodMetadata.get(BeanImpl.class
+				.getMethod("deprecated", new Class[0]));
+		assertNotNull(inherited.getAnnotation(Deprecated.class));
+
+		MethodMetadata run = MethodMetadata.get(Runnable.class.getMethod(
+				"run", new Class[0]));
+		assertNull(run.getAnnotation(Deprecated.class));
+	}
+
+	public static interface Bean {
+		@Deprecated
+		public void deprecated();
+	}
+
+	public static class BeanImpl implements Bean {
+		public void deprecated() {
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of {@link ProxyRegistry}.
+ */
+public class ProxyRegistryTest extends TestCase {
+
+	private ProxyFactory factory = new JDKProxyFactory();
+
+	private Evaluator evaluator = new Evaluator() {
+		public void evaluate(Invocation invocation) throws Throwable {
+			invocation.evaluate();
+		}
+	};
+
+	public void testReuse() throws Exception {
+		ProxyRegistry registry = new ProxyRegistry();
+
+		Runnable target = new Target();
+		Object proxy = registry.getProxy(target, factory, evaluator);
+
+		assertSame(proxy, registry.getProxy(target, factory, evaluator));
+		assertEquals(1, registry.size());
+
+		assertNotSame(proxy, registry.getProxy(new Target(), factory,
+				evaluator));
+		assertNotSame(proxy, registry.getProxy(target, new JDKProxyFactory(),
+				evaluator));
+		assertNotSame(proxy, registry.getProxy(target, factory,
+				new Evaluator() {
+					public void evaluate(Invocation invocation)
+							throws Throwable {
+						invocation.evaluate();
+					}
+				}));
+	}
+
+	public void testExpunge() throws Exception {
+		ProxyRegistry registry = new ProxyRegistry();
+
+		Runnable target = new Target();
+		registry.getProxy(target, factory, evaluator);
+		for (int t = 0; t < 10; t++) {
+			registry.getProxy(new Target(), factory, evaluator);
+		}
+
+		for (int attempt = 0; attempt < 50 && registry.size() > 0; attempt++) {
+			List garbage = new ArrayList();
+			for (int g = 0; g < 1000; g++) {
+				garbage.add(new byte[1024]);
+			}
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(0, registry.size());
+
+		Object proxy = registry.getProxy(target, factory, evaluator);
+		assertSame(proxy, registry.getProxy(target, factory, evaluator));
+	}
+
+	public void testSpin() throws Exception {
+		Runnable target = new Target();
+
+		Object off = Spin.off(target);
+		assertSame(off, Spin.off(target));
+
+		Object over = Spin.over(target);
+		assertSame(over, Spin.over(target));
+
+		assertNotSame(off, over);
+	}
+
+	public void testIllegal() throws Exception {
+		ProxyRegistry registry = new ProxyRegistry();
+
+		try {
+			registry.getProxy(null, factory, evaluator);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			registry.getProxy(new Target(), null, evaluator);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			registry.getProxy(new Target(), factory, null);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	private static class Target implements Runnable {
+		public void run() {
+		}
+	}
+}
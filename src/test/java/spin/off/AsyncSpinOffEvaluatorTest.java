@@ -0,0 +1,161 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.Spin;
+
+/**
+ * Test of {@link AsyncSpinOffEvaluator}.
+ */
+public class AsyncSpinOffEvaluatorTest extends TestCase {
+
+	private static final int DELAY = 500;
+
+	public void testAsync() throws Exception {
+		final AsyncBean bean = (AsyncBean) Spin.offAsync(new Bean(),
+				AsyncBean.class);
+
+		final CompletableFuture[] future = new CompletableFuture[2];
+		final boolean[] completedOnEDT = new boolean[1];
+		long start = System.currentTimeMillis();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				future[0] = bean.load(1);
+				assertFalse(future[0].isDone());
+
+				future[1] = future[0].whenComplete(new BiConsumer() {
+					public void accept(Object result, Object throwable) {
+						completedOnEDT[0] = SwingUtilities
+								.isEventDispatchThread();
+					}
+				});
+			}
+		});
+		assertTrue(System.currentTimeMillis() - start < DELAY);
+
+		assertEquals("1", future[1].get(5, TimeUnit.SECONDS));
+		assertTrue(completedOnEDT[0]);
+	}
+
+	public void testStage() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.offAsync(new Bean(),
+				AsyncBean.class);
+
+		CompletionStage stage = bean.loadStage(2);
+
+		assertEquals("2", stage.toCompletableFuture().get(5, TimeUnit.SECONDS));
+	}
+
+	public void testThrowable() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.offAsync(new Bean(),
+				AsyncBean.class);
+
+		try {
+			bean.fail().toCompletableFuture().get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof IOException);
+		}
+	}
+
+	public void testStageThrowable() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.offAsync(new Bean(),
+				AsyncBean.class);
+
+		Object throwable = bean.failStage().handle(new BiFunction() {
+			public Object apply(Object result, Object throwable) {
+				return throwable;
+			}
+		}).toCompletableFuture().get(5, TimeUnit.SECONDS);
+		assertTrue(throwable instanceof IllegalStateException);
+	}
+
+	public void testSynchronous() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.offAsync(new Bean(),
+				AsyncBean.class);
+
+		assertEquals(3, bean.getCount());
+	}
+
+	public void testNotImplemented() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.offAsync(new Object(),
+				AsyncBean.class);
+
+		try {
+			bean.getCount();
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public static interface AsyncBean {
+		public CompletableFuture load(int id);
+
+		public CompletionStage loadStage(int id);
+
+		public CompletionStage fail();
+
+		public CompletionStage failStage();
+
+		public int getCount();
+	}
+
+	public static class Bean {
+		public String load(int id) {
+			try {
+				Thread.sleep(DELAY);
+			} catch (InterruptedException ex) {
+			}
+			return String.valueOf(id);
+		}
+
+		public CompletableFuture loadStage(int id) {
+			return CompletableFuture.completedFuture(String.valueOf(id));
+		}
+
+		public String fail() throws IOException {
+			throw new IOException();
+		}
+
+		public CompletableFuture failStage() {
+			return CompletableFuture.completedFuture("").thenApply(
+					new Function() {
+						public Object apply(Object result) {
+							throw new IllegalStateException();
+						}
+					});
+		}
+
+		public int getCount() {
+			return 3;
+		}
+	}
+}
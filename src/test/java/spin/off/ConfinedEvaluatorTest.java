@@ -0,0 +1,248 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of {@link ConfinedEvaluator} and {@link StripedStarter}.
+ */
+public class ConfinedEvaluatorTest extends TestCase {
+
+	private StripedStarter starter = new StripedStarter(2);
+
+	private ConfinedEvaluator evaluator = new ConfinedEvaluator(starter);
+
+	protected void tearDown() throws Exception {
+		starter.shutdown();
+	}
+
+	private Bean createProxy(Object bean) {
+		return (Bean) new JDKProxyFactory().createProxy(bean, evaluator);
+	}
+
+	public void testConfinement() throws Exception {
+		final BeanImpl bean = new BeanImpl();
+		final Bean proxy = createProxy(bean);
+
+		List threads = new ArrayList();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread() {
+				public void run() {
+					for (int c = 0; c < 10; c++) {
+						proxy.work(1);
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				proxy.work(1);
+			}
+		});
+		for (int t = 0; t < threads.size(); t++) {
+			((Thread) threads.get(t)).join();
+		}
+
+		assertEquals(41, bean.count.get());
+		assertEquals(1, bean.maximum);
+		assertEquals(1, bean.threads.size());
+		assertTrue(((String) bean.threads.get(0)).startsWith("Spin-Lane-"));
+	}
+
+	public void testTargeted() throws Exception {
+		final Object target = new Object();
+		final List threads = new ArrayList();
+		final CountDownLatch done = new CountDownLatch(8);
+		for (int r = 0; r < 8; r++) {
+			starter.start(new Targeted() {
+				public Object getTarget() {
+					return target;
+				}
+
+				public void run() {
+					if (starter.isCurrentLane(starter.indexOf(target))) {
+						synchronized (threads) {
+							threads.add(Thread.currentThread());
+						}
+					}
+					done.countDown();
+				}
+			});
+		}
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+
+		// all on the lane of the target
+		assertEquals(8, threads.size());
+		for (int t = 0; t < threads.size(); t++) {
+			assertSame(threads.get(0), threads.get(t));
+		}
+	}
+
+	public void testParallel() throws Exception {
+		BeanImpl bean1 = new BeanImpl();
+		BeanImpl bean2 = new BeanImpl();
+		while (starter.indexOf(bean1) == starter.indexOf(bean2)) {
+			bean2 = new BeanImpl();
+		}
+
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		bean1.entered = entered;
+		bean1.release = release;
+
+		final Bean proxy1 = createProxy(bean1);
+		new Thread() {
+			public void run() {
+				proxy1.work(1);
+			}
+		}.start();
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+		createProxy(bean2).work(1);
+		assertEquals(1, bean2.count.get());
+
+		release.countDown();
+	}
+
+	public void testPipelined() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		final Bean proxy = (Bean) new JDKProxyFactory().createProxy(bean,
+				new PipelinedSpinOffEvaluator(null, starter, null));
+
+		final int[] depth = new int[1];
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					SwingUtilities.invokeAndWait(new Runnable() {
+						public void run() {
+							proxy.work(1);
+							depth[0] = proxy.nest(0);
+						}
+					});
+				} catch (Exception ex) {
+					throw new Error(ex);
+				}
+			}
+		};
+		thread.start();
+		thread.join(5000);
+		assertFalse(thread.isAlive());
+
+		assertEquals(1, bean.count.get());
+		assertEquals(0, depth[0]);
+		assertEquals(1, bean.threads.size());
+		assertTrue(((String) bean.threads.get(0)).startsWith("Spin-Lane-"));
+	}
+
+	public void testTimeout() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		bean.entered = new CountDownLatch(1);
+		bean.release = new CountDownLatch(1);
+		final Bean proxy = createProxy(bean);
+
+		evaluator.setTimeout(100);
+		assertEquals(100, evaluator.getTimeout());
+
+		final Throwable[] throwable = new Throwable[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					proxy.work(1);
+				} catch (Throwable ex) {
+					throwable[0] = ex;
+				}
+			}
+		});
+		assertTrue(throwable[0] instanceof InvocationTimeoutException);
+	}
+
+	public void testReentrant() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		bean.self = createProxy(bean);
+
+		assertEquals(3, bean.self.nest(3));
+	}
+
+	public static interface Bean {
+		public void work(int millis);
+
+		public int nest(int depth);
+	}
+
+	public static class BeanImpl implements Bean {
+
+		AtomicInteger count = new AtomicInteger();
+
+		private AtomicInteger current = new AtomicInteger();
+
+		volatile int maximum;
+
+		List threads = new ArrayList();
+
+		CountDownLatch entered;
+
+		CountDownLatch release;
+
+		Bean self;
+
+		public void work(int millis) {
+			int current = this.current.incrementAndGet();
+			maximum = Math.max(maximum, current);
+
+			String name = Thread.currentThread().getName();
+			if (!threads.contains(name)) {
+				threads.add(name);
+			}
+
+			if (entered != null) {
+				entered.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+				}
+			}
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException ex) {
+			}
+			count.incrementAndGet();
+
+			this.current.decrementAndGet();
+		}
+
+		public int nest(int depth) {
+			if (depth == 0) {
+				return 0;
+			}
+			return 1 + self.nest(depth - 1);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of {@link ExecutorStarter}.
+ */
+public class ExecutorStarterTest extends TestCase {
+
+	public void testReuse() throws Exception {
+		ExecutorStarter starter = new ExecutorStarter(2, 2, 60,
+				TimeUnit.SECONDS, 100);
+
+		final Set threads = Collections.synchronizedSet(new HashSet());
+		final CountDownLatch latch = new CountDownLatch(20);
+		for (int r = 0; r < 20; r++) {
+			starter.start(new Runnable() {
+				public void run() {
+					threads.add(Thread.currentThread());
+					latch.countDown();
+				}
+			});
+		}
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+		assertTrue(threads.size() <= 2);
+		assertEquals(0, starter.getRejectedCount());
+
+		starter.shutdown();
+	}
+
+	public void testRejection() throws Exception {
+		ExecutorStarter starter = new ExecutorStarter(1, 1, 60,
+				TimeUnit.SECONDS, 1);
+
+		final CountDownLatch blocker = new CountDownLatch(1);
+		Runnable blocking = new Runnable() {
+			public void run() {
+				try {
+					blocker.await();
+				} catch (InterruptedException ex) {
+				}
+			}
+		};
+		starter.start(blocking);
+		starter.start(blocking);
+
+		final Thread[] ran = new Thread[1];
+		starter.start(new Runnable() {
+			public void run() {
+				ran[0] = Thread.currentThread();
+			}
+		});
+		assertSame(Thread.currentThread(), ran[0]);
+		assertEquals(1, starter.getRejectedCount());
+		assertEquals(1, starter.getQueuedCount());
+
+		blocker.countDown();
+		starter.shutdown();
+	}
+
+	public void testReaping() throws Exception {
+		ExecutorStarter starter = new ExecutorStarter(2, 2, 10,
+				TimeUnit.MILLISECONDS, 10);
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		starter.start(new Runnable() {
+			public void run() {
+				latch.countDown();
+			}
+		});
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+		for (int attempt = 0; attempt < 500 && starter.getPoolSize() > 0; attempt++) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, starter.getPoolSize());
+		assertEquals(1, starter.getCompletedCount());
+	}
+
+	public void testDefaultStarter() throws Exception {
+		final SpinOffEvaluator evaluator = new SpinOffEvaluator();
+
+		Starter starter = SpinOffEvaluator.getDefaultStarter();
+		final CountDownLatch started = new CountDownLatch(1);
+		SpinOffEvaluator.setDefaultStarter(new Starter() {
+			public void start(Runnable runnable) {
+				started.countDown();
+
+				new Thread(runnable).start();
+			}
+		});
+		try {
+			SwingUtilities.invokeAndWait(new Runnable() {
+				public void run() {
+					try {
+						evaluator.evaluate(new spin.Invocation(new Object(),
+								Object.class.getMethod("toString",
+										new Class[0]), new Object[0]));
+					} catch (Throwable ex) {
+						throw new Error(ex);
+					}
+				}
+			});
+		} finally {
+			SpinOffEvaluator.setDefaultStarter(starter);
+		}
+
+		assertEquals(0, started.getCount());
+	}
+}
@@ -0,0 +1,255 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of {@link PipelinedSpinOffEvaluator}.
+ */
+public class PipelinedSpinOffEvaluatorTest extends TestCase {
+
+	private List runnables = Collections.synchronizedList(new ArrayList());
+
+	private List throwables = new ArrayList();
+
+	private List sizes = Collections.synchronizedList(new ArrayList());
+
+	private Bean createProxy(Object bean) {
+		return createProxy(bean, new Starter() {
+			public void start(Runnable runnable) {
+				runnables.add(runnable);
+			}
+		});
+	}
+
+	private Bean createProxy(Object bean, Starter starter) {
+		PipelinedSpinOffEvaluator evaluator = new PipelinedSpinOffEvaluator(
+				null, starter, new Thread.UncaughtExceptionHandler() {
+					public void uncaughtException(Thread thread,
+							Throwable throwable) {
+						throwables.add(throwable);
+					}
+				});
+
+		return (Bean) new JDKProxyFactory().createProxy(bean, evaluator);
+	}
+
+	public void testPipeline() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		Bean proxy = createProxy(bean);
+
+		proxy.add("a");
+		proxy.add("b");
+		proxy.add("c");
+		assertEquals(0, bean.values.size());
+		assertEquals(1, runnables.size());
+
+		drain();
+		assertEquals(3, bean.values.size());
+		assertEquals("a", bean.values.get(0));
+		assertEquals("b", bean.values.get(1));
+		assertEquals("c", bean.values.get(2));
+
+		proxy.add("d");
+		assertEquals(1, runnables.size());
+		drain();
+		assertEquals(4, bean.values.size());
+	}
+
+	public void testObjects() throws Exception {
+		BeanImpl bean1 = new BeanImpl();
+		BeanImpl bean2 = new BeanImpl();
+
+		createProxy(bean1).add("1");
+		createProxy(bean2).add("2");
+		assertEquals(2, runnables.size());
+
+		drain();
+		assertEquals(Collections.singletonList("1"), bean1.values);
+		assertEquals(Collections.singletonList("2"), bean2.values);
+	}
+
+	public void testThrowable() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		Bean proxy = createProxy(bean);
+
+		proxy.fail();
+		proxy.add("a");
+		drain();
+
+		assertEquals(1, throwables.size());
+		assertTrue(throwables.get(0) instanceof IllegalStateException);
+		assertEquals(Collections.singletonList("a"), bean.values);
+	}
+
+	public void testNonVoid() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		Bean proxy = createProxy(bean);
+
+		drain(size(proxy));
+
+		assertEquals(Collections.singletonList(Integer.valueOf(0)), sizes);
+	}
+
+	public void testNonVoidOrdered() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		Bean proxy = createProxy(bean);
+
+		proxy.add("a");
+		Thread thread = size(proxy);
+		assertEquals(0, bean.values.size());
+
+		// size is queued behind add
+		drain(thread);
+		assertEquals(Collections.singletonList(Integer.valueOf(1)), sizes);
+	}
+
+	public void testStriped() throws Exception {
+		StripedStarter starter = new StripedStarter(2);
+		try {
+			assertNonVoid(createProxy(new BeanImpl(), starter));
+		} finally {
+			starter.shutdown();
+		}
+	}
+
+	public void testBoundedExecutor() throws Exception {
+		ExecutorStarter starter = new ExecutorStarter(1, 1, 60,
+				TimeUnit.SECONDS, 1);
+		try {
+			assertNonVoid(createProxy(new BeanImpl(), starter));
+		} finally {
+			starter.shutdown();
+		}
+	}
+
+	/**
+	 * Assert that a non-void invocation following a void one does not starve
+	 * the starter, neither on the EDT nor on another thread.
+	 * 
+	 * @param proxy
+	 *            proxy of the bean
+	 */
+	private void assertNonVoid(final Bean proxy) throws Exception {
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					SwingUtilities.invokeAndWait(new Runnable() {
+						public void run() {
+							proxy.add("a");
+							sizes.add(Integer.valueOf(proxy.size()));
+						}
+					});
+				} catch (Exception ex) {
+					throw new Error(ex);
+				}
+			}
+		};
+		thread.start();
+		thread.join(5000);
+		assertFalse(thread.isAlive());
+
+		thread = new Thread() {
+			public void run() {
+				proxy.add("b");
+				sizes.add(Integer.valueOf(proxy.size()));
+			}
+		};
+		thread.start();
+		thread.join(5000);
+		assertFalse(thread.isAlive());
+
+		assertEquals(2, sizes.size());
+		assertEquals(Integer.valueOf(1), sizes.get(0));
+		assertEquals(Integer.valueOf(2), sizes.get(1));
+	}
+
+	/**
+	 * Invoke {@link Bean#size()} on another thread.
+	 * 
+	 * @param proxy
+	 *            proxy of the bean
+	 * @return the invoking thread
+	 */
+	private Thread size(final Bean proxy) {
+		Thread thread = new Thread() {
+			public void run() {
+				sizes.add(Integer.valueOf(proxy.size()));
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Drain until the given thread has finished.
+	 * 
+	 * @param thread
+	 *            thread to wait for
+	 */
+	private void drain(Thread thread) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (thread.isAlive()) {
+			assertTrue(System.currentTimeMillis() < deadline);
+
+			drain();
+			thread.join(10);
+		}
+	}
+
+	private void drain() {
+		while (!runnables.isEmpty()) {
+			((Runnable) runnables.remove(0)).run();
+		}
+	}
+
+	public static interface Bean {
+		public void add(String value);
+
+		public void fail();
+
+		public int size();
+	}
+
+	public static class BeanImpl implements Bean {
+
+		List values = new ArrayList();
+
+		public void add(String value) {
+			values.add(value);
+		}
+
+		public void fail() {
+			throw new IllegalStateException();
+		}
+
+		public int size() {
+			return values.size();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of {@link PriorityStarter}.
+ */
+public class PriorityStarterTest extends TestCase {
+
+	private List order = Collections.synchronizedList(new ArrayList());
+
+	private CountDownLatch release = new CountDownLatch(1);
+
+	private CountDownLatch done;
+
+	public void testPriority() throws Exception {
+		PriorityStarter starter = new PriorityStarter(1, 1, TimeUnit.HOURS);
+		block(starter);
+
+		done = new CountDownLatch(4);
+		starter.start(new Task("background", Priority.BACKGROUND));
+		starter.start(new Task("normal", Priority.NORMAL));
+		starter.start(new Runnable() {
+			public void run() {
+				order.add("plain");
+				done.countDown();
+			}
+		});
+		starter.start(new Task("interactive", Priority.INTERACTIVE));
+		assertEquals(4, starter.getQueuedCount());
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+
+		assertEquals("interactive", order.get(0));
+		assertEquals("normal", order.get(1));
+		assertEquals("plain", order.get(2));
+		assertEquals("background", order.get(3));
+
+		assertEquals(1, starter.getStartedCount(Priority.INTERACTIVE));
+		assertEquals(3, starter.getStartedCount(Priority.NORMAL));
+		assertTrue(starter.getAverageWait(Priority.BACKGROUND) >= starter
+				.getAverageWait(Priority.INTERACTIVE));
+
+		starter.shutdown();
+	}
+
+	public void testAging() throws Exception {
+		PriorityStarter starter = new PriorityStarter(1, 10,
+				TimeUnit.MILLISECONDS);
+		block(starter);
+
+		done = new CountDownLatch(2);
+		starter.start(new Task("background", Priority.BACKGROUND));
+		Thread.sleep(200);
+		starter.start(new Task("interactive", Priority.INTERACTIVE));
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+
+		assertEquals("background", order.get(0));
+		assertEquals("interactive", order.get(1));
+
+		starter.shutdown();
+	}
+
+	private void block(PriorityStarter starter) throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		starter.start(new Runnable() {
+			public void run() {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+				}
+			}
+		});
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+	}
+
+	private class Task implements Prioritized {
+
+		private String name;
+
+		private int priority;
+
+		public Task(String name, int priority) {
+			this.name = name;
+			this.priority = priority;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public void run() {
+			order.add(name);
+			done.countDown();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of {@link SecondaryLoopDispatcherFactory}.
+ */
+public class SecondaryLoopDispatcherTest extends TestCase {
+
+	private SecondaryLoopDispatcherFactory factory = new SecondaryLoopDispatcherFactory();
+
+	public void testDispatch() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch dispatched = new CountDownLatch(1);
+		final CountDownLatch stopped = new CountDownLatch(1);
+		final Dispatcher[] dispatcher = new Dispatcher[1];
+
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				dispatcher[0] = factory.createDispatcher();
+				started.countDown();
+				try {
+					dispatcher[0].start();
+				} catch (Throwable throwable) {
+					fail(throwable.getMessage());
+				}
+				stopped.countDown();
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				dispatched.countDown();
+			}
+		});
+		assertTrue(dispatched.await(5, TimeUnit.SECONDS));
+		assertFalse(stopped.await(100, TimeUnit.MILLISECONDS));
+
+		dispatcher[0].stop();
+		assertTrue(stopped.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testStopBeforeStart() throws Exception {
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				for (int d = 0; d < 3; d++) {
+					Dispatcher dispatcher = factory.createDispatcher();
+					dispatcher.stop();
+					try {
+						dispatcher.start();
+					} catch (Throwable throwable) {
+						fail(throwable.getMessage());
+					}
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of parking of {@link SpinOffEvaluator}.
+ */
+public class SpinOffParkTest extends TestCase {
+
+	private static final long MILLIS = 1000000;
+
+	private long dispatcherCreated;
+
+	private SpinOffEvaluator evaluator = new SpinOffEvaluator(
+			new DispatcherFactory() {
+				public Dispatcher createDispatcher() {
+					dispatcherCreated = System.nanoTime();
+
+					return SpinOffEvaluator.getDefaultDispatcherFactory()
+							.createDispatcher();
+				}
+			});
+
+	private Bean proxy = (Bean) new JDKProxyFactory().createProxy(
+			new BeanImpl(), evaluator);
+
+	public void testDisabled() throws Exception {
+		callOnEDT(new Runnable() {
+			public void run() {
+				proxy.sleep(0);
+			}
+		});
+
+		assertEquals(0, evaluator.getParkedCount());
+		assertEquals(1, evaluator.getDispatchedCount());
+	}
+
+	public void testPark() throws Exception {
+		evaluator.setParkWindow(500 * MILLIS);
+
+		callOnEDT(new Runnable() {
+			public void run() {
+				assertEquals(0, proxy.sleep(0));
+			}
+		});
+
+		assertEquals(1, evaluator.getParkedCount());
+		assertEquals(0, evaluator.getDispatchedCount());
+	}
+
+	public void testAdapt() throws Exception {
+		evaluator.setParkWindow(50 * MILLIS);
+
+		long start = callOnEDT(new Runnable() {
+			public void run() {
+				proxy.sleep(200);
+			}
+		});
+		assertEquals(1, evaluator.getDispatchedCount());
+		assertTrue(dispatcherCreated - start >= 50 * MILLIS);
+
+		start = callOnEDT(new Runnable() {
+			public void run() {
+				proxy.sleep(200);
+			}
+		});
+		assertEquals(2, evaluator.getDispatchedCount());
+		assertTrue(dispatcherCreated - start < 50 * MILLIS);
+	}
+
+	private long callOnEDT(final Runnable runnable) throws Exception {
+		final long[] start = new long[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				start[0] = System.nanoTime();
+				runnable.run();
+			}
+		});
+		return start[0];
+	}
+
+	public static interface Bean {
+		public int sleep(int millis);
+	}
+
+	public static class BeanImpl implements Bean {
+		public int sleep(int millis) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException ex) {
+			}
+			return millis;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of timeouts and cancellation of {@link SpinOffEvaluator}.
+ */
+public class SpinOffTimeoutTest extends TestCase {
+
+	private BeanImpl bean = new BeanImpl();
+
+	private SpinOffEvaluator evaluator = new SpinOffEvaluator();
+
+	private Bean proxy = (Bean) new JDKProxyFactory().createProxy(bean,
+			evaluator);
+
+	public void testTimeout() throws Exception {
+		evaluator.setTimeout(100);
+
+		Throwable throwable = callOnEDT(new Runnable() {
+			public void run() {
+				proxy.hang();
+			}
+		});
+		assertTrue(throwable instanceof InvocationTimeoutException);
+		assertTrue(bean.interrupted.await(5, TimeUnit.SECONDS));
+
+		assertNull(callOnEDT(new Runnable() {
+			public void run() {
+				assertEquals("done", proxy.quick());
+			}
+		}));
+	}
+
+	public void testMethodTimeout() throws Exception {
+		Throwable throwable = callOnEDT(new Runnable() {
+			public void run() {
+				proxy.hangWithTimeout();
+			}
+		});
+		assertTrue(throwable instanceof InvocationTimeoutException);
+		assertTrue(bean.interrupted.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testCancel() throws Exception {
+		assertCancel(bean);
+	}
+
+	public void testCancelProxy() throws Exception {
+		assertCancel(proxy);
+	}
+
+	/**
+	 * Assert that a hanging spin-off is cancelled through the given object.
+	 * 
+	 * @param object
+	 *            proxy or bean to cancel
+	 */
+	private void assertCancel(Object object) throws Exception {
+		final Throwable[] throwable = new Throwable[1];
+		final CountDownLatch done = new CountDownLatch(1);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				try {
+					proxy.hang();
+				} catch (Throwable ex) {
+					throwable[0] = ex;
+				}
+				done.countDown();
+			}
+		});
+		assertTrue(bean.entered.await(5, TimeUnit.SECONDS));
+
+		evaluator.cancel(new Object());
+		assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+
+		evaluator.cancel(object);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertTrue(throwable[0] instanceof CancellationException);
+		assertTrue(bean.interrupted.await(5, TimeUnit.SECONDS));
+	}
+
+	private Throwable callOnEDT(final Runnable runnable) throws Exception {
+		final Throwable[] throwable = new Throwable[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					runnable.run();
+				} catch (Throwable ex) {
+					throwable[0] = ex;
+				}
+			}
+		});
+		return throwable[0];
+	}
+
+	public static interface Bean {
+		public void hang();
+
+		@Timeout(100)
+		public void hangWithTimeout();
+
+		public String quick();
+	}
+
+	public static class BeanImpl implements Bean {
+
+		CountDownLatch entered = new CountDownLatch(1);
+
+		CountDownLatch interrupted = new CountDownLatch(1);
+
+		public void hang() {
+			entered.countDown();
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException ex) {
+				interrupted.countDown();
+			}
+		}
+
+		public void hangWithTimeout() {
+			hang();
+		}
+
+		public String quick() {
+			return "done";
+		}
+	}
+}
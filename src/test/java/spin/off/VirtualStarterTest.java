@@ -0,0 +1,64 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.off;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of {@link VirtualStarter}.
+ */
+public class VirtualStarterTest extends TestCase {
+
+	public void testStart() throws Exception {
+		final Thread[] thread = new Thread[1];
+		final CountDownLatch latch = new CountDownLatch(1);
+		Runnable runnable = new Runnable() {
+			public void run() {
+				thread[0] = Thread.currentThread();
+				latch.countDown();
+			}
+		};
+
+		final boolean[] fallback = new boolean[1];
+		VirtualStarter starter = new VirtualStarter(new Starter() {
+			public void start(Runnable runnable) {
+				fallback[0] = true;
+
+				new Thread(runnable).start();
+			}
+		});
+		starter.start(runnable);
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		if (VirtualStarter.isAvailable()) {
+			assertFalse(fallback[0]);
+
+			Method isVirtual = Thread.class.getMethod("isVirtual", new Class[0]);
+			assertEquals(Boolean.TRUE, isVirtual.invoke(thread[0],
+					new Object[0]));
+			assertTrue(thread[0].getName().startsWith("Spin-Virtual-"));
+		} else {
+			assertTrue(fallback[0]);
+		}
+	}
+}
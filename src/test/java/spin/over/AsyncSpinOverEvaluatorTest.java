@@ -0,0 +1,193 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.Spin;
+
+/**
+ * Test of {@link AsyncSpinOverEvaluator}.
+ */
+public class AsyncSpinOverEvaluatorTest extends TestCase {
+
+	public void testAsync() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.overAsync(new Bean(),
+				AsyncBean.class);
+
+		bean.setText("spin");
+
+		final Object lock = new Object();
+		CompletableFuture text;
+		Future length;
+		synchronized (lock) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					synchronized (lock) {
+					}
+				}
+			});
+
+			// EDT is blocked
+			text = bean.getText();
+			length = bean.getLength();
+			assertFalse(text.isDone());
+			assertFalse(length.isDone());
+		}
+
+		assertEquals("spin", text.get(5, TimeUnit.SECONDS));
+		assertEquals(Integer.valueOf(4), length.get(5, TimeUnit.SECONDS));
+	}
+
+	public void testSynchronous() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.overAsync(new Bean(),
+				AsyncBean.class);
+
+		bean.setText("spin");
+
+		assertEquals("spin", bean.getText().get(5, TimeUnit.SECONDS));
+	}
+
+	public void testOnEDT() throws Exception {
+		final AsyncBean bean = (AsyncBean) Spin.overAsync(new Bean(),
+				AsyncBean.class);
+
+		final CompletableFuture[] text = new CompletableFuture[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				bean.setText("spin");
+				text[0] = bean.getText();
+			}
+		});
+
+		assertTrue(text[0].isDone());
+		assertEquals("spin", text[0].get());
+	}
+
+	public void testStage() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.overAsync(new Bean(),
+				AsyncBean.class);
+
+		CompletionStage stage = bean.getTextLater();
+		assertEquals("", stage.toCompletableFuture().get(5, TimeUnit.SECONDS));
+	}
+
+	public void testThrowable() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.overAsync(new Bean(),
+				AsyncBean.class);
+
+		try {
+			bean.fail().get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	public void testStageThrowable() throws Exception {
+		AsyncBean bean = (AsyncBean) Spin.overAsync(new Bean(),
+				AsyncBean.class);
+
+		Object throwable = bean.failStage().handle(new BiFunction() {
+			public Object apply(Object result, Object throwable) {
+				return throwable;
+			}
+		}).get(5, TimeUnit.SECONDS);
+		assertTrue(throwable instanceof IllegalStateException);
+	}
+
+	public static interface AsyncBean {
+		public void setText(String text);
+
+		public CompletableFuture getText();
+
+		public Future getLength();
+
+		public CompletionStage getTextLater();
+
+		public CompletableFuture fail();
+
+		public CompletableFuture failStage();
+	}
+
+	/**
+	 * A Swing-like bean, not implementing {@link AsyncBean}.
+	 */
+	public static class Bean {
+
+		private String text = "";
+
+		private void check() {
+			if (!SwingUtilities.isEventDispatchThread()) {
+				throw new IllegalStateException();
+			}
+		}
+
+		public void setText(String text) {
+			check();
+
+			this.text = text;
+		}
+
+		public String getText() {
+			check();
+
+			return text;
+		}
+
+		public int getLength() {
+			check();
+
+			return text.length();
+		}
+
+		public CompletionStage getTextLater() {
+			check();
+
+			return CompletableFuture.supplyAsync(new Supplier() {
+				public Object get() {
+					return text;
+				}
+			});
+		}
+
+		public String fail() {
+			throw new IllegalStateException();
+		}
+
+		public CompletionStage failStage() {
+			return CompletableFuture.completedFuture(text).thenApply(
+					new Function() {
+						public Object apply(Object result) {
+							throw new IllegalStateException();
+						}
+					});
+		}
+	}
+}
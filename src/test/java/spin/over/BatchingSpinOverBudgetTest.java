@@ -0,0 +1,158 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of the budget of {@link BatchingSpinOverEvaluator}.
+ */
+public class BatchingSpinOverBudgetTest extends TestCase {
+
+	private BatchingSpinOverEvaluator evaluator = new BatchingSpinOverEvaluator();
+
+	/**
+	 * Queue the given count of updates while the EDT is blocked, the first
+	 * update posts an event.
+	 * 
+	 * @param bean
+	 *            the bean
+	 * @param count
+	 *            count of updates
+	 */
+	private void update(final BeanImpl bean, int count) throws Exception {
+		Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		Object lock = new Object();
+		synchronized (lock) {
+			SpinOverTests.blockEDT(lock);
+
+			for (int i = 0; i < count; i++) {
+				proxy.update(i);
+			}
+			assertEquals(count, evaluator.getBacklog());
+		}
+
+		// waits behind all updates
+		proxy.getCount();
+		assertEquals(0, evaluator.getBacklog());
+
+		// twice for a drain posted on yield
+		for (int i = 0; i < 2; i++) {
+			SpinOverTests.flush();
+		}
+		assertEquals(count + 1, bean.values.size());
+	}
+
+	public void testUnlimited() throws Exception {
+		BeanImpl bean = new BeanImpl();
+
+		update(bean, 20);
+
+		assertEquals(20, bean.values.indexOf("event"));
+		assertEquals(0, evaluator.getYieldCount());
+		assertEquals(0, evaluator.getOverrunCount());
+	}
+
+	public void testBudget() throws Exception {
+		evaluator.setBudget(5000000);
+
+		BeanImpl bean = new BeanImpl();
+
+		update(bean, 20);
+
+		int index = bean.values.indexOf("event");
+		assertTrue(index > 0);
+		assertTrue(index < 20);
+		assertTrue(evaluator.getYieldCount() > 0);
+		assertTrue(evaluator.getDrainCount() > evaluator.getYieldCount());
+		assertTrue(evaluator.getOverrunCount() <= evaluator.getYieldCount());
+		if (evaluator.getOverrunCount() > 0) {
+			assertTrue(evaluator.getOverrunTime() > 0);
+		}
+	}
+
+	public void testOverrun() throws Exception {
+		evaluator.setBudget(10000000);
+
+		Bean proxy = (Bean) SpinOverTests.createProxy(new BeanImpl(),
+				evaluator);
+
+		proxy.slow();
+		proxy.getCount();
+
+		assertEquals(1, evaluator.getOverrunCount());
+		assertTrue(evaluator.getOverrunTime() >= 10000000);
+	}
+
+	public void testNegative() {
+		try {
+			evaluator.setBudget(-1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public static interface Bean {
+		public void update(int value);
+
+		public void slow();
+
+		public int getCount();
+	}
+
+	public static class BeanImpl implements Bean {
+
+		List values = new ArrayList();
+
+		public void update(int value) {
+			if (value == 0) {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						values.add("event");
+					}
+				});
+			}
+
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException ex) {
+				throw new Error(ex);
+			}
+			values.add(Integer.valueOf(value));
+		}
+
+		public void slow() {
+			try {
+				Thread.sleep(30);
+			} catch (InterruptedException ex) {
+				throw new Error(ex);
+			}
+		}
+
+		public int getCount() {
+			return values.size();
+		}
+	}
+}
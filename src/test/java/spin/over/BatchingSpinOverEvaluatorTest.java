@@ -0,0 +1,189 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of {@link BatchingSpinOverEvaluator}.
+ */
+public class BatchingSpinOverEvaluatorTest extends TestCase {
+
+	private List throwables = Collections.synchronizedList(new ArrayList());
+
+	private BatchingSpinOverEvaluator evaluator = new BatchingSpinOverEvaluator(
+			new Thread.UncaughtExceptionHandler() {
+				public void uncaughtException(Thread thread,
+						Throwable throwable) {
+					throwables.add(throwable);
+				}
+			});
+
+	public void testBatch() throws Exception {
+		final BeanImpl bean = new BeanImpl();
+		final Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		// the drain event is posted before the flush
+		SpinOverTests.blocked(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 100; i++) {
+					proxy.add("" + i);
+				}
+				assertEquals(0, bean.values.size());
+			}
+		});
+
+		assertEquals(100, bean.values.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("" + i, bean.values.get(i));
+		}
+		assertEquals(1, evaluator.getDrainCount());
+	}
+
+	public void testProducers() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		final Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		Thread[] producers = new Thread[4];
+		for (int p = 0; p < producers.length; p++) {
+			final String prefix = p + ":";
+			producers[p] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						proxy.add(prefix + i);
+					}
+				}
+			};
+			producers[p].start();
+		}
+		for (int p = 0; p < producers.length; p++) {
+			producers[p].join();
+		}
+
+		assertEquals(4000, proxy.size());
+
+		int[] next = new int[producers.length];
+		for (int v = 0; v < bean.values.size(); v++) {
+			String value = (String) bean.values.get(v);
+			int p = Integer.parseInt(value.substring(0, value.indexOf(':')));
+			int i = Integer.parseInt(value.substring(value.indexOf(':') + 1));
+
+			assertEquals(next[p]++, i);
+		}
+		assertTrue(evaluator.getDrainCount() <= 4001);
+	}
+
+	public void testThrowable() throws Exception {
+		Bean proxy = (Bean) SpinOverTests.createProxy(new BeanImpl(),
+				evaluator);
+
+		proxy.fail();
+		proxy.size();
+
+		assertEquals(1, throwables.size());
+		assertTrue(throwables.get(0) instanceof IllegalStateException);
+
+		try {
+			proxy.check();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals(1, throwables.size());
+	}
+
+	public void testFailingHandler() throws Exception {
+		BatchingSpinOverEvaluator evaluator = new BatchingSpinOverEvaluator(
+				new Thread.UncaughtExceptionHandler() {
+					public void uncaughtException(Thread thread,
+							Throwable throwable) {
+						throwables.add(throwable);
+
+						throw new IllegalArgumentException();
+					}
+				});
+		BeanImpl bean = new BeanImpl();
+		Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		proxy.fail();
+		proxy.add("a");
+
+		// drain is resumed after the failure
+		assertEquals(1, proxy.size());
+		assertEquals(1, throwables.size());
+
+		proxy.fail();
+		proxy.add("b");
+		assertEquals(2, proxy.size());
+		assertEquals(2, throwables.size());
+	}
+
+	public void testOnEDT() throws Exception {
+		final BeanImpl bean = new BeanImpl();
+		final Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				proxy.add("a");
+
+				assertEquals(1, bean.values.size());
+			}
+		});
+		assertEquals(0, evaluator.getDrainCount());
+	}
+
+	public static interface Bean {
+		public void add(String value);
+
+		public void fail();
+
+		public boolean check();
+
+		public int size();
+	}
+
+	public static class BeanImpl implements Bean {
+
+		List values = new ArrayList();
+
+		public void add(String value) {
+			if (!SwingUtilities.isEventDispatchThread()) {
+				throw new IllegalStateException();
+			}
+			values.add(value);
+		}
+
+		public void fail() {
+			throw new IllegalStateException();
+		}
+
+		public boolean check() {
+			throw new IllegalStateException();
+		}
+
+		public int size() {
+			return values.size();
+		}
+	}
+}
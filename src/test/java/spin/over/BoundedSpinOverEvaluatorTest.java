@@ -0,0 +1,167 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of {@link BoundedSpinOverEvaluator}.
+ */
+public class BoundedSpinOverEvaluatorTest extends TestCase {
+
+	private final Object lock = new Object();
+
+	/**
+	 * Wait until the given evaluator throttles with the given backlog.
+	 * 
+	 * @param evaluator
+	 *            the evaluator
+	 * @param backlog
+	 *            the expected backlog
+	 */
+	private void awaitThrottled(BoundedSpinOverEvaluator evaluator,
+			int backlog) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (evaluator.getBlockedCount() == 0
+				|| evaluator.getBacklog() != backlog) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("not throttled");
+			}
+			Thread.sleep(10);
+		}
+		assertTrue(evaluator.isThrottled());
+	}
+
+	private void throttle(int policy) throws Exception {
+		BoundedSpinOverEvaluator evaluator = new BoundedSpinOverEvaluator(10,
+				2, policy, null);
+
+		BeanImpl bean = new BeanImpl();
+		final Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		Thread producer = new Thread() {
+			public void run() {
+				for (int i = 0; i < 50; i++) {
+					proxy.add(Integer.valueOf(i));
+				}
+			}
+		};
+
+		synchronized (lock) {
+			SpinOverTests.blockEDT(lock);
+
+			producer.start();
+
+			awaitThrottled(evaluator, 10);
+			assertTrue(producer.isAlive());
+		}
+
+		producer.join(5000);
+		assertFalse(producer.isAlive());
+
+		assertEquals(50, proxy.size());
+		for (int i = 0; i < 50; i++) {
+			assertEquals(Integer.valueOf(i), bean.values.get(i));
+		}
+		assertTrue(evaluator.getBlockedCount() > 0);
+		assertTrue(evaluator.getBlockedTime() > 0);
+		assertEquals(0, evaluator.getRejectedCount());
+	}
+
+	public void testBlock() throws Exception {
+		throttle(BoundedSpinOverEvaluator.BLOCK);
+	}
+
+	public void testSpin() throws Exception {
+		throttle(BoundedSpinOverEvaluator.SPIN);
+	}
+
+	public void testReject() throws Exception {
+		BoundedSpinOverEvaluator evaluator = new BoundedSpinOverEvaluator(10,
+				2, BoundedSpinOverEvaluator.REJECT, null);
+
+		BeanImpl bean = new BeanImpl();
+		Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		synchronized (lock) {
+			SpinOverTests.blockEDT(lock);
+
+			for (int i = 0; i < 10; i++) {
+				proxy.add(Integer.valueOf(i));
+			}
+			assertEquals(10, evaluator.getBacklog());
+
+			try {
+				proxy.add(Integer.valueOf(10));
+				fail();
+			} catch (RejectedExecutionException expected) {
+			}
+			assertTrue(evaluator.isThrottled());
+			assertEquals(1, evaluator.getRejectedCount());
+		}
+
+		assertEquals(10, proxy.size());
+		assertFalse(evaluator.isThrottled());
+
+		proxy.add(Integer.valueOf(10));
+		assertEquals(11, proxy.size());
+		assertEquals(0, evaluator.getBlockedCount());
+	}
+
+	public void testWaterMarks() {
+		try {
+			new BoundedSpinOverEvaluator(0, 0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			new BoundedSpinOverEvaluator(10, 10);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			new BoundedSpinOverEvaluator(10, 2, 3, null);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public static interface Bean {
+		public void add(Object value);
+
+		public int size();
+	}
+
+	public static class BeanImpl implements Bean {
+
+		List values = new ArrayList();
+
+		public void add(Object value) {
+			values.add(value);
+		}
+
+		public int size() {
+			return values.size();
+		}
+	}
+}
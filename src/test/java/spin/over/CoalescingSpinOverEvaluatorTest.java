@@ -0,0 +1,125 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of {@link CoalescingSpinOverEvaluator}.
+ */
+public class CoalescingSpinOverEvaluatorTest extends TestCase {
+
+	private CoalescingSpinOverEvaluator evaluator = new CoalescingSpinOverEvaluator();
+
+	public void testLatest() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		final Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		SpinOverTests.blocked(new Runnable() {
+			public void run() {
+				for (int i = 0; i <= 100; i++) {
+					proxy.setProgress(i);
+				}
+				proxy.setStatus("done");
+			}
+		});
+
+		assertEquals(2, bean.values.size());
+		assertEquals("progress 100", bean.values.get(0));
+		assertEquals("status done", bean.values.get(1));
+		assertEquals(100, evaluator.getDroppedCount());
+
+		proxy.setProgress(0);
+		assertEquals(3, proxy.getCount());
+		assertEquals("progress 0", bean.values.get(2));
+	}
+
+	public void testObjects() throws Exception {
+		BeanImpl bean1 = new BeanImpl();
+		BeanImpl bean2 = new BeanImpl();
+		final Bean proxy1 = (Bean) SpinOverTests.createProxy(bean1, evaluator);
+		final Bean proxy2 = (Bean) SpinOverTests.createProxy(bean2, evaluator);
+
+		SpinOverTests.blocked(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 10; i++) {
+					proxy1.setProgress(i);
+					proxy2.setProgress(i);
+				}
+			}
+		});
+
+		assertEquals(1, bean1.values.size());
+		assertEquals(1, bean2.values.size());
+		assertEquals(18, evaluator.getDroppedCount());
+	}
+
+	public void testCoalesceBy() throws Exception {
+		BeanImpl bean = new BeanImpl();
+		final Bean proxy = (Bean) SpinOverTests.createProxy(bean, evaluator);
+
+		SpinOverTests.blocked(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 10; i++) {
+					proxy.setValueAt("" + i, i % 2);
+				}
+			}
+		});
+
+		assertEquals(2, bean.values.size());
+		assertEquals("row 0 8", bean.values.get(0));
+		assertEquals("row 1 9", bean.values.get(1));
+		assertEquals(8, evaluator.getDroppedCount());
+	}
+
+	public static interface Bean {
+		public void setProgress(int progress);
+
+		public void setStatus(String status);
+
+		@CoalesceBy(1)
+		public void setValueAt(Object value, int row);
+
+		public int getCount();
+	}
+
+	public static class BeanImpl implements Bean {
+
+		List values = new ArrayList();
+
+		public void setProgress(int progress) {
+			values.add("progress " + progress);
+		}
+
+		public void setStatus(String status) {
+			values.add("status " + status);
+		}
+
+		public void setValueAt(Object value, int row) {
+			values.add("row " + row + " " + value);
+		}
+
+		public int getCount() {
+			return values.size();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.over;
+
+import javax.swing.SwingUtilities;
+
+import spin.Evaluator;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Helpers shared by the tests of spin-over evaluators.
+ */
+final class SpinOverTests {
+
+	private SpinOverTests() {
+	}
+
+	/**
+	 * Create a proxy evaluating with the given evaluator.
+	 * 
+	 * @param object
+	 *            object to create proxy for
+	 * @param evaluator
+	 *            evaluator of invocations
+	 * @return the proxy
+	 */
+	static Object createProxy(Object object, Evaluator evaluator) {
+		return new JDKProxyFactory().createProxy(object, evaluator);
+	}
+
+	/**
+	 * Block the EDT until the given lock, held by the caller, is released.
+	 * 
+	 * @param lock
+	 *            the lock
+	 */
+	static void blockEDT(final Object lock) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				synchronized (lock) {
+				}
+			}
+		});
+	}
+
+	/**
+	 * Block the EDT while running the given runnable, then wait for all
+	 * pending events.
+	 * 
+	 * @param runnable
+	 *            runnable to run
+	 */
+	static void blocked(Runnable runnable) throws Exception {
+		Object lock = new Object();
+		synchronized (lock) {
+			blockEDT(lock);
+
+			runnable.run();
+		}
+
+		flush();
+	}
+
+	/**
+	 * Wait for all pending events.
+	 */
+	static void flush() throws Exception {
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+			}
+		});
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+import spin.Evaluator;
+import spin.Invocation;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of {@link CachingEvaluator}.
+ */
+public class CachingEvaluatorTest extends TestCase {
+
+	private int evaluations;
+
+	private CachingEvaluator createEvaluator(int capacity) {
+		return new CachingEvaluator(new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				evaluations++;
+
+				invocation.evaluate();
+			}
+		}, capacity);
+	}
+
+	private Bean createProxy(Object bean, Evaluator evaluator) {
+		return (Bean) new JDKProxyFactory().createProxy(bean, evaluator);
+	}
+
+	public void testHit() throws Exception {
+		CachingEvaluator evaluator = createEvaluator(10);
+		Bean proxy = createProxy(new BeanImpl(), evaluator);
+
+		assertEquals("1:1", proxy.load(1));
+		assertEquals("1:1", proxy.load(1));
+		assertEquals("2:2", proxy.load(2));
+		assertEquals(2, evaluations);
+
+		assertEquals(1, evaluator.getHitCount());
+		assertEquals(2, evaluator.getMissCount());
+		assertEquals(2, evaluator.getSize());
+
+		Bean other = createProxy(new BeanImpl(), evaluator);
+		assertEquals("1:1", other.load(1));
+		assertEquals(3, evaluations);
+	}
+
+	public void testNotCached() throws Exception {
+		CachingEvaluator evaluator = createEvaluator(10);
+		Bean proxy = createProxy(new BeanImpl(), evaluator);
+
+		assertEquals("1", proxy.count());
+		assertEquals("2", proxy.count());
+		assertEquals(0, evaluator.getMissCount());
+
+		try {
+			proxy.fail();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			proxy.fail();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals(0, evaluator.getSize());
+	}
+
+	public void testLRU() throws Exception {
+		CachingEvaluator evaluator = createEvaluator(2);
+		Bean proxy = createProxy(new BeanImpl(), evaluator);
+
+		proxy.load(1);
+		proxy.load(2);
+		proxy.load(1);
+		proxy.load(3);
+		assertEquals(1, evaluator.getEvictionCount());
+
+		proxy.load(1);
+		assertEquals(3, evaluations);
+		proxy.load(2);
+		assertEquals(4, evaluations);
+	}
+
+	public void testTTL() throws Exception {
+		CachingEvaluator evaluator = createEvaluator(10);
+		Bean proxy = createProxy(new BeanImpl(), evaluator);
+
+		assertEquals("1:1", proxy.expiring(1));
+		assertEquals("1:1", proxy.expiring(1));
+
+		Thread.sleep(50);
+		assertEquals("2:1", proxy.expiring(1));
+		assertEquals(1, evaluator.getEvictionCount());
+	}
+
+	public void testInvalidate() throws Exception {
+		CachingEvaluator evaluator = createEvaluator(10);
+		BeanImpl bean = new BeanImpl();
+		Bean proxy = createProxy(bean, evaluator);
+
+		proxy.load(1);
+		proxy.expiring(1);
+		evaluator.invalidate(Bean.class.getMethod("load",
+				new Class[] { Integer.TYPE }));
+		assertEquals(1, evaluator.getSize());
+
+		proxy.load(1);
+		evaluator.invalidate(bean);
+		assertEquals(0, evaluator.getSize());
+
+		proxy.load(1);
+		evaluator.invalidateAll();
+		assertEquals(0, evaluator.getSize());
+		assertEquals(0, evaluator.getEvictionCount());
+	}
+
+	public void testInvalidateWhileEvaluating() throws Exception {
+		final CountDownLatch evaluating = new CountDownLatch(1);
+		final CountDownLatch invalidated = new CountDownLatch(1);
+		final CachingEvaluator evaluator = new CachingEvaluator(new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				evaluations++;
+
+				invocation.evaluate();
+
+				evaluating.countDown();
+				invalidated.await();
+			}
+		}, 10);
+		final BeanImpl bean = new BeanImpl();
+		final Bean proxy = createProxy(bean, evaluator);
+
+		Thread thread = new Thread() {
+			public void run() {
+				proxy.load(1);
+			}
+		};
+		thread.start();
+
+		evaluating.await();
+		evaluator.invalidate(bean);
+		invalidated.countDown();
+		thread.join();
+
+		assertEquals(0, evaluator.getSize());
+		assertEquals("2:1", proxy.load(1));
+		assertEquals(2, evaluations);
+		assertEquals(1, evaluator.getSize());
+	}
+
+	public static interface Bean {
+		@Cached
+		public String load(int id);
+
+		@Cached(ttl = 10)
+		public String expiring(int id);
+
+		public String count();
+
+		@Cached
+		public String fail();
+	}
+
+	public static class BeanImpl implements Bean {
+
+		private int count;
+
+		public String load(int id) {
+			return ++count + ":" + id;
+		}
+
+		public String expiring(int id) {
+			return ++count + ":" + id;
+		}
+
+		public String count() {
+			return "" + ++count;
+		}
+
+		public String fail() {
+			throw new IllegalStateException();
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import spin.Evaluator;
+import spin.Invocation;
+import spin.off.SpinOffEvaluator;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of {@link CoalescingEvaluator}.
+ */
+public class CoalescingEvaluatorTest extends TestCase {
+
+	private BeanImpl bean = new BeanImpl();
+
+	public void testCoalesce() throws Exception {
+		CoalescingEvaluator evaluator = new CoalescingEvaluator(
+				new Evaluator() {
+					public void evaluate(Invocation invocation)
+							throws Throwable {
+						invocation.evaluate();
+					}
+				});
+		final Bean proxy = (Bean) new JDKProxyFactory().createProxy(bean,
+				evaluator);
+
+		final String[] results = new String[3];
+		Thread first = start(new Runnable() {
+			public void run() {
+				results[0] = proxy.load(1);
+			}
+		});
+		assertTrue(bean.entered.await(5, TimeUnit.SECONDS));
+
+		Thread second = start(new Runnable() {
+			public void run() {
+				results[1] = proxy.load(1);
+			}
+		});
+		while (evaluator.getCoalescedCount() == 0) {
+			Thread.sleep(1);
+		}
+
+		Thread third = start(new Runnable() {
+			public void run() {
+				results[2] = proxy.load(2);
+			}
+		});
+
+		bean.release.countDown();
+		first.join();
+		second.join();
+		third.join();
+
+		assertEquals("1", results[0]);
+		assertSame(results[0], results[1]);
+		assertEquals("2", results[2]);
+		assertEquals(2, bean.evaluations.get());
+		assertEquals(1, evaluator.getCoalescedCount());
+
+		assertEquals("1", proxy.load(1));
+		assertEquals(3, bean.evaluations.get());
+	}
+
+	public void testNotAnnotated() throws Exception {
+		CoalescingEvaluator evaluator = new CoalescingEvaluator(
+				new Evaluator() {
+					public void evaluate(Invocation invocation)
+							throws Throwable {
+						invocation.evaluate();
+					}
+				});
+		Bean proxy = (Bean) new JDKProxyFactory().createProxy(bean, evaluator);
+
+		assertEquals("plain", proxy.plain());
+		assertEquals(0, evaluator.getCoalescedCount());
+	}
+
+	public void testEDT() throws Exception {
+		final CoalescingEvaluator evaluator = new CoalescingEvaluator(
+				new SpinOffEvaluator());
+		final Bean proxy = (Bean) new JDKProxyFactory().createProxy(bean,
+				evaluator);
+
+		final String[] results = new String[2];
+		final CountDownLatch done = new CountDownLatch(2);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				results[0] = proxy.load(1);
+				done.countDown();
+			}
+		});
+		assertTrue(bean.entered.await(5, TimeUnit.SECONDS));
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				results[1] = proxy.load(1);
+				done.countDown();
+			}
+		});
+		while (evaluator.getCoalescedCount() == 0) {
+			Thread.sleep(1);
+		}
+
+		bean.release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+
+		assertEquals("1", results[0]);
+		assertSame(results[0], results[1]);
+		assertEquals(1, bean.evaluations.get());
+	}
+
+	private Thread start(Runnable runnable) {
+		Thread thread = new Thread(runnable);
+		thread.start();
+		return thread;
+	}
+
+	public static interface Bean {
+		@Coalesce
+		public String load(int id);
+
+		public String plain();
+	}
+
+	public static class BeanImpl implements Bean {
+
+		AtomicInteger evaluations = new AtomicInteger();
+
+		CountDownLatch entered = new CountDownLatch(1);
+
+		CountDownLatch release = new CountDownLatch(1);
+
+		public String load(int id) {
+			evaluations.incrementAndGet();
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+			}
+			return String.valueOf(id);
+		}
+
+		public String plain() {
+			return "plain";
+		}
+	}
+}
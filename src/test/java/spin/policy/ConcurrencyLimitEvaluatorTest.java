@@ -0,0 +1,256 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import spin.Evaluator;
+import spin.Invocation;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of {@link ConcurrencyLimitEvaluator}.
+ */
+public class ConcurrencyLimitEvaluatorTest extends TestCase {
+
+	private CountDownLatch release = new CountDownLatch(1);
+
+	private AtomicInteger current = new AtomicInteger();
+
+	private volatile int maximum;
+
+	private List entries = Collections.synchronizedList(new ArrayList());
+
+	private Bean createProxy(ConcurrencyLimitEvaluator evaluator) {
+		return (Bean) new JDKProxyFactory().createProxy(new BeanImpl(),
+				evaluator);
+	}
+
+	private ConcurrencyLimitEvaluator createEvaluator(int globalPermits,
+			int objectPermits, int maxWaiting) {
+		return new ConcurrencyLimitEvaluator(new Evaluator() {
+			public void evaluate(Invocation invocation) throws Throwable {
+				invocation.evaluate();
+			}
+		}, globalPermits, objectPermits, maxWaiting);
+	}
+
+	public void testGlobal() throws Exception {
+		ConcurrencyLimitEvaluator evaluator = createEvaluator(2, 0, 10);
+
+		Thread[] threads = new Thread[5];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = work(createProxy(evaluator));
+		}
+		awaitWaiting(evaluator, 3);
+		awaitActive(evaluator, 2);
+
+		release.countDown();
+		join(threads);
+
+		assertEquals(2, maximum);
+		assertEquals(0, evaluator.getActiveCount());
+		assertEquals(3, evaluator.getWaitCount());
+		assertTrue(evaluator.getWaitTime() > 0);
+	}
+
+	public void testObject() throws Exception {
+		ConcurrencyLimitEvaluator evaluator = createEvaluator(0, 1, 10);
+		Bean proxy1 = createProxy(evaluator);
+		Bean proxy2 = createProxy(evaluator);
+
+		Thread[] threads = new Thread[] { work(proxy1), work(proxy1),
+				work(proxy2), work(proxy2) };
+		awaitWaiting(evaluator, 2);
+		awaitActive(evaluator, 2);
+
+		release.countDown();
+		join(threads);
+		assertEquals(2, maximum);
+	}
+
+	public void testBusyObject() throws Exception {
+		ConcurrencyLimitEvaluator evaluator = createEvaluator(2, 1, 10);
+		Bean busy = createProxy(evaluator);
+
+		Thread[] threads = new Thread[] { work(busy), work(busy), work(busy),
+				null };
+		awaitWaiting(evaluator, 2);
+		awaitActive(evaluator, 1);
+
+		// waiting invocations on the busy object hold no global permits
+		threads[3] = work(createProxy(evaluator));
+		awaitActive(evaluator, 2);
+		assertEquals(2, evaluator.getWaitingCount());
+
+		release.countDown();
+		join(threads);
+		assertEquals(2, maximum);
+	}
+
+	public void testMethod() throws Exception {
+		ConcurrencyLimitEvaluator evaluator = createEvaluator(0, 0, 10);
+
+		final Bean proxy = createProxy(evaluator);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					proxy.limited();
+				}
+			};
+			threads[t].start();
+		}
+		awaitWaiting(evaluator, 3);
+
+		release.countDown();
+		join(threads);
+		assertEquals(1, maximum);
+	}
+
+	public void testRejection() throws Exception {
+		ConcurrencyLimitEvaluator evaluator = createEvaluator(1, 0, 1);
+
+		Thread[] threads = new Thread[] { work(createProxy(evaluator)),
+				work(createProxy(evaluator)) };
+		awaitWaiting(evaluator, 1);
+
+		try {
+			createProxy(evaluator).work();
+			fail();
+		} catch (RejectedExecutionException expected) {
+		}
+		assertEquals(1, evaluator.getRejectedCount());
+
+		release.countDown();
+		join(threads);
+	}
+
+	public void testFairness() throws Exception {
+		ConcurrencyLimitEvaluator evaluator = createEvaluator(1, 0, 0);
+
+		final Bean proxy = createProxy(evaluator);
+		Thread twice = new Thread() {
+			public void run() {
+				proxy.work();
+				proxy.work();
+			}
+		};
+		twice.start();
+		awaitActive(evaluator, 1);
+		Thread once = work(proxy);
+		awaitWaiting(evaluator, 1);
+
+		// second invocation arrives late and must not jump the queue
+		release.countDown();
+		join(new Thread[] { twice, once });
+
+		assertEquals(3, entries.size());
+		assertSame(twice, entries.get(0));
+		assertSame(once, entries.get(1));
+		assertSame(twice, entries.get(2));
+	}
+
+	public void testUnlimitedWaiting() throws Exception {
+		ConcurrencyLimitEvaluator evaluator = createEvaluator(1, 0, 0);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = work(createProxy(evaluator));
+		}
+		awaitWaiting(evaluator, 3);
+
+		release.countDown();
+		join(threads);
+		assertEquals(0, evaluator.getRejectedCount());
+	}
+
+	private Thread work(final Bean proxy) {
+		Thread thread = new Thread() {
+			public void run() {
+				proxy.work();
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	private void awaitWaiting(ConcurrencyLimitEvaluator evaluator, int count)
+			throws Exception {
+		for (int attempt = 0; attempt < 500; attempt++) {
+			if (evaluator.getWaitingCount() == count) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+		fail("waiting " + evaluator.getWaitingCount());
+	}
+
+	private void awaitActive(ConcurrencyLimitEvaluator evaluator, int count)
+			throws Exception {
+		for (int attempt = 0; attempt < 500; attempt++) {
+			if (evaluator.getActiveCount() == count) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+		fail("active " + evaluator.getActiveCount());
+	}
+
+	private void join(Thread[] threads) throws Exception {
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+	}
+
+	public static interface Bean {
+		public void work();
+
+		@Limit(1)
+		public void limited();
+	}
+
+	public class BeanImpl implements Bean {
+		public void work() {
+			entries.add(Thread.currentThread());
+
+			int current = ConcurrencyLimitEvaluatorTest.this.current
+					.incrementAndGet();
+			synchronized (ConcurrencyLimitEvaluatorTest.this) {
+				maximum = Math.max(maximum, current);
+			}
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+			}
+			ConcurrencyLimitEvaluatorTest.this.current.decrementAndGet();
+		}
+
+		public void limited() {
+			work();
+		}
+	}
+}
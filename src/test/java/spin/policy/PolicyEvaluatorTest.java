@@ -0,0 +1,177 @@
+/**
+ * Spin - transparent threading solution for non-freezing Swing applications.
+ * Copyright (C) 2002 Sven Meier
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package spin.policy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import spin.Evaluator;
+import spin.Invocation;
+import spin.off.SpinOffEvaluator;
+import spin.off.Starter;
+import spin.proxy.JDKProxyFactory;
+
+/**
+ * Test of {@link PolicyEvaluator}.
+ */
+public class PolicyEvaluatorTest extends TestCase {
+
+	private List evaluations = new ArrayList();
+
+	private List runnables = new ArrayList();
+
+	private Starter starter = new Starter() {
+		public void start(Runnable runnable) {
+			runnables.add(runnable);
+		}
+	};
+
+	private Bean createProxy(Object bean) {
+		PolicyEvaluator evaluator = new PolicyEvaluator(
+				new RecordingEvaluator("default"), new RecordingEvaluator(
+						"off"), new RecordingEvaluator("over"), starter);
+
+		return (Bean) new JDKProxyFactory().createProxy(bean, evaluator);
+	}
+
+	public void testPolicies() {
+		Bean proxy = createProxy(new BeanImpl());
+
+		assertEquals("default", proxy.getDefault());
+		assertEquals("off", proxy.getOff());
+		assertEquals("over", proxy.getOver());
+		assertEquals("inline", proxy.getInline());
+
+		assertEquals(3, evaluations.size());
+		assertEquals("default", evaluations.get(0));
+		assertEquals("off", evaluations.get(1));
+		assertEquals("over", evaluations.get(2));
+	}
+
+	public void testAsync() {
+		BeanImpl bean = new BeanImpl();
+		Bean proxy = createProxy(bean);
+
+		proxy.setAsync("async");
+		assertNull(bean.value);
+		assertEquals(1, runnables.size());
+
+		((Runnable) runnables.get(0)).run();
+		assertEquals("async", bean.value);
+	}
+
+	public void testAsyncDefaultStarter() {
+		Starter defaultStarter = SpinOffEvaluator.getDefaultStarter();
+		SpinOffEvaluator.setDefaultStarter(starter);
+		try {
+			BeanImpl bean = new BeanImpl();
+			Bean proxy = (Bean) new JDKProxyFactory().createProxy(bean,
+					new PolicyEvaluator(new RecordingEvaluator("default")));
+
+			proxy.setAsync("async");
+			assertEquals(1, runnables.size());
+		} finally {
+			SpinOffEvaluator.setDefaultStarter(defaultStarter);
+		}
+	}
+
+	public void testAsyncNonVoid() {
+		Bean proxy = createProxy(new BeanImpl());
+
+		try {
+			proxy.getAsync();
+			fail();
+		} catch (RuntimeException expected) {
+		}
+	}
+
+	/**
+	 * Evaluator recording its evaluations.
+	 */
+	private class RecordingEvaluator extends Evaluator {
+
+		private String name;
+
+		public RecordingEvaluator(String name) {
+			this.name = name;
+		}
+
+		public void evaluate(Invocation invocation) throws Throwable {
+			evaluations.add(name);
+
+			invocation.evaluate();
+		}
+	}
+
+	/**
+	 * Interface with annotated methods.
+	 */
+	public static interface Bean {
+
+		public String getDefault();
+
+		@Off
+		public String getOff();
+
+		@Over
+		public String getOver();
+
+		@Inline
+		public String getInline();
+
+		@Async
+		public void setAsync(String value);
+
+		@Async
+		public String getAsync();
+	}
+
+	/**
+	 * Implementation of bean.
+	 */
+	public static class BeanImpl implements Bean {
+
+		public String value;
+
+		public String getDefault() {
+			return "default";
+		}
+
+		public String getOff() {
+			return "off";
+		}
+
+		public String getOver() {
+			return "over";
+		}
+
+		public String getInline() {
+			return "inline";
+		}
+
+		public void setAsync(String value) {
+			this.value = value;
+		}
+
+		public String getAsync() {
+			return "async";
+		}
+	}
+}